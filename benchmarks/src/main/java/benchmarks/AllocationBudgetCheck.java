@@ -0,0 +1,318 @@
+package benchmarks;
+
+import controller.rest.AuthenticationFilter;
+import controller.rest.CategoriesRestServlet;
+import controller.rest.TodosRestServlet;
+import controller.rest.TodosTransferRestServlet;
+import controller.rest.helper.JsonHelper;
+import controller.rest.helper.TokenHelper;
+import model.Todo;
+import model.TodoOrder;
+import model.User;
+import model.UserManager;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Measures the bytes allocated per operation for the REST handlers and model calls on the request path and compares
+ * them with the budgets recorded in a properties file. The check fails if an operation allocates more than its
+ * budget, so a change which increases the GC pressure is noticed by the build.
+ * <p>
+ * The allocations are counted by the ThreadMXBean of the current thread after a warm-up, so the JIT compiler has
+ * already removed allocations it can eliminate. The data is a generated user with 100 todos.
+ * <p>
+ * The handlers are measured while the User Manager doesn't write the data, so a budget covers the handling of the
+ * request; the cost of writing the todos of a user is measured as an operation of its own. Operations which change
+ * the list, such as adding or deleting a todo, restore it before each iteration, outside of the measurement.
+ * <p>
+ * Usage: {@code AllocationBudgetCheck <budget file> [record]}. If record is true, the measured values plus a headroom
+ * of 20%, at least 256 bytes, are written as new budgets.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class AllocationBudgetCheck {
+    private static final double HEADROOM = 1.2;
+    // Small operations get at least this headroom, so a few bytes of noise don't fail the build
+    private static final long MIN_HEADROOM_BYTES = 256;
+    private static final int WARM_UP = 20_000;
+    private static final int ITERATIONS = 2_000;
+    // Writing the data syncs the file to the disk, so these operations are measured fewer times
+    private static final int PERSISTING_WARM_UP = 500;
+    private static final int PERSISTING_ITERATIONS = 100;
+    // Verifying a password computes its PBKDF2 hash, which takes tens of milliseconds
+    private static final int HASHING_WARM_UP = 20;
+    private static final int HASHING_ITERATIONS = 20;
+    private static final FilterChain END_OF_CHAIN = (request, response) -> {
+    };
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * An operation to measure.
+     */
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * An operation with the number of its runs and a preparation which runs before each iteration and is not measured.
+     */
+    private static class Measurement {
+        private final Operation prepare;
+        private final Operation operation;
+        private final int warmUp;
+        private final int iterations;
+
+        private Measurement(Operation prepare, Operation operation, int warmUp, int iterations) {
+            this.prepare = prepare;
+            this.operation = operation;
+            this.warmUp = warmUp;
+            this.iterations = iterations;
+        }
+    }
+
+    private final Map<String, Measurement> operations = new LinkedHashMap<>();
+    private final Map<String, Measurement> persistingOperations = new LinkedHashMap<>();
+    private UserManager userManager;
+
+    /**
+     * Runs the check.
+     *
+     * @param args the budget file and optionally true to record new budgets
+     * @throws Exception is thrown if an operation failed
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: AllocationBudgetCheck <budget file> [record]");
+        }
+        boolean record = args.length > 1 && Boolean.parseBoolean(args[1]);
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocation budgets not checked: thread allocation counters are not supported by this JVM");
+            return;
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        BenchmarkData.quietLogging();
+        AllocationBudgetCheck check = new AllocationBudgetCheck();
+        check.setUp();
+        Map<String, Long> measured = check.measureAll();
+        Path budgetFile = Paths.get(args[0]);
+        if (record) {
+            writeBudgets(budgetFile, measured);
+        } else if (!check.verify(readBudgets(budgetFile), measured)) {
+            System.exit(1);
+        }
+    }
+
+    private void setUp() throws Exception {
+        Path directory = Files.createTempDirectory("todoapp-allocation");
+        BenchmarkData.generator().users(10).todosPerUser(100).writeXml(directory.resolve("WEB-INF/xml/Data.xml"));
+        ServletContext servletContext = BenchmarkData.servletContext(directory);
+        userManager = UserManager.getInstance(servletContext);
+        User user = userManager.getUser(0);
+        List<Todo> todos = user.getTodos();
+        Todo todo = todos.get(todos.size() / 2);
+        int lastTodoID = todos.stream().mapToInt(Todo::getTodoID).max().orElse(0);
+        String todoJson = JsonHelper.writeTodoJsonData(todo);
+        String update = "{\"title\":\"" + todo.getTitle() + "\",\"completed\":true}";
+        String create = "{\"title\":\"New todo\",\"category\":\"" + todo.getCategory() + "\"}";
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        JsonHelper.writeTodoNdjson(todos.subList(0, 10), ndjson);
+
+        TodosRestServlet todosServlet = ServletStubs.init(new TodosRestServlet(), servletContext);
+        CategoriesRestServlet categoriesServlet = ServletStubs.init(new CategoriesRestServlet(), servletContext);
+        TodosTransferRestServlet transferServlet = ServletStubs.init(new TodosTransferRestServlet(), servletContext);
+        // the rate limiters are disabled, so the measured requests are not rejected
+        AuthenticationFilter authenticationFilter = ServletStubs.init(new AuthenticationFilter(),
+            BenchmarkData.servletContext(directory, Map.of("readsPerSecond", "0")));
+        AuthenticationFilter uncachedAuthenticationFilter = ServletStubs.init(new AuthenticationFilter(),
+            BenchmarkData.servletContext(directory, Map.of("readsPerSecond", "0", "credentialCacheSize", "0")));
+        ServletStubs.Response response = new ServletStubs.Response();
+        HttpServletRequest getTodos = ServletStubs.request("GET", null, 0, null);
+        HttpServletRequest getTodo = ServletStubs.request("GET", "/" + todo.getTodoID(), 0, null);
+        HttpServletRequest getCategories = ServletStubs.request("GET", null, 0, null);
+        HttpServletRequest putTodo = ServletStubs.request("PUT", "/" + todo.getTodoID(), 0, update);
+        HttpServletRequest postTodo = ServletStubs.request("POST", null, 0, create);
+        HttpServletRequest[] deleteTodo = new HttpServletRequest[1];
+        HttpServletRequest exportTodos = ServletStubs.request("GET", "/api/todos/export", null,
+            Map.of("Accept", JsonHelper.NDJSON_CONTENT_TYPE), 0, null);
+        HttpServletRequest importTodos = ServletStubs.request("POST", "/api/todos/import", null,
+            Map.of("Accept", JsonHelper.NDJSON_CONTENT_TYPE, "Content-Type", JsonHelper.NDJSON_CONTENT_TYPE), 0,
+            ndjson.toString(StandardCharsets.UTF_8));
+        String basic = "Basic " + Base64.getEncoder()
+            .encodeToString(("user0:" + BenchmarkData.PASSWORD).getBytes(StandardCharsets.UTF_8));
+        String bearer = TokenHelper.TOKEN_TYPE + " " + TokenHelper.createToken(0, System.currentTimeMillis() + 3_600_000);
+        HttpServletRequest basicAuthentication = ServletStubs.request("GET", "/api/todos", null,
+            Map.of("Authorization", basic), null, null);
+        HttpServletRequest bearerAuthentication = ServletStubs.request("GET", "/api/todos", null,
+            Map.of("Authorization", bearer), null, null);
+        // the todos added by the previous iteration are deleted, so the list doesn't grow
+        Operation removeAdded = () -> {
+            for (Todo added : user.getTodos()) {
+                if (added.getTodoID() > lastTodoID) {
+                    user.deleteTodo(added);
+                }
+            }
+        };
+
+        add("model.getTodos", user::getTodos);
+        add("model.getTodos.categoryAndStatus", () -> user.getTodos("Category 0", "incomplete"));
+        add("model.getTodos.byTitle", () -> user.getTodos(null, null, TodoOrder.TITLE));
+        add("model.getTodo", () -> user.getTodo(todo.getTodoID()));
+        add("model.getUser", () -> userManager.getUser(9));
+        add("model.updateTodo", () -> user.updateTodo(todo));
+        add("json.writeTodoList", () -> JsonHelper.writeTodoJsonData(todos));
+        add("json.writeTodo", () -> JsonHelper.writeTodoJsonData(todo));
+        add("json.readJsonData", () -> JsonHelper.readJsonData(todoJson));
+        add("rest.getTodos", () -> expect(200, todosServlet, getTodos, response));
+        add("rest.getTodo", () -> expect(200, todosServlet, getTodo, response));
+        add("rest.getCategories", () -> expect(200, categoriesServlet, getCategories, response));
+        add("rest.putTodo", () -> expect(204, todosServlet, putTodo, response));
+        operations.put("rest.postTodo", new Measurement(removeAdded,
+            () -> expect(201, todosServlet, postTodo, response), WARM_UP, ITERATIONS));
+        operations.put("rest.deleteTodo", new Measurement(() -> {
+            Todo added = new Todo("Deleted todo", todo.getCategory(), null, false);
+            user.addTodo(added);
+            deleteTodo[0] = ServletStubs.request("DELETE", "/" + added.getTodoID(), 0, null);
+        }, () -> expect(204, todosServlet, deleteTodo[0], response), WARM_UP, ITERATIONS));
+        add("transfer.exportTodos", () -> expect(200, transferServlet, exportTodos, response));
+        operations.put("transfer.importTodos", new Measurement(removeAdded,
+            () -> expect(200, transferServlet, importTodos, response), WARM_UP, ITERATIONS));
+        add("auth.bearer", () -> expect(200, authenticationFilter, bearerAuthentication, response));
+        add("auth.basicCached", () -> expect(200, authenticationFilter, basicAuthentication, response));
+        operations.put("auth.basic", new Measurement(null,
+            () -> expect(200, uncachedAuthenticationFilter, basicAuthentication, response), HASHING_WARM_UP,
+            HASHING_ITERATIONS));
+        persistingOperations.put("persist.writeUser", new Measurement(null,
+            () -> userManager.writeData(servletContext, user), PERSISTING_WARM_UP, PERSISTING_ITERATIONS));
+    }
+
+    private void add(String name, Operation operation) {
+        operations.put(name, new Measurement(null, operation, WARM_UP, ITERATIONS));
+    }
+
+    private static void expect(int status, HttpServlet servlet, HttpServletRequest request,
+                               ServletStubs.Response response) throws IOException {
+        ServletStubs.service(servlet, request, response);
+        expect(status, response);
+    }
+
+    private static void expect(int status, AuthenticationFilter filter, HttpServletRequest request,
+                               ServletStubs.Response response) throws IOException {
+        ServletStubs.filter(filter, request, response, END_OF_CHAIN);
+        expect(status, response);
+    }
+
+    private static void expect(int status, ServletStubs.Response response) {
+        if (response.getStatus() != status) {
+            throw new IllegalStateException("Unexpected status " + response.getStatus() + " instead of " + status);
+        }
+    }
+
+    private Map<String, Long> measureAll() throws Exception {
+        Map<String, Long> measured = new LinkedHashMap<>();
+        userManager.setWriting(false);
+        try {
+            for (Map.Entry<String, Measurement> entry : operations.entrySet()) {
+                measured.put(entry.getKey(), measure(entry.getValue()));
+            }
+        } finally {
+            userManager.setWriting(true);
+        }
+        for (Map.Entry<String, Measurement> entry : persistingOperations.entrySet()) {
+            measured.put(entry.getKey(), measure(entry.getValue()));
+        }
+        return measured;
+    }
+
+    private static long measure(Measurement measurement) throws Exception {
+        for (int i = 0; i < measurement.warmUp; i++) {
+            if (measurement.prepare != null) {
+                measurement.prepare.run();
+            }
+            measurement.operation.run();
+        }
+        long threadID = Thread.currentThread().getId();
+        long allocated = 0;
+        if (measurement.prepare == null) {
+            long before = THREADS.getThreadAllocatedBytes(threadID);
+            for (int i = 0; i < measurement.iterations; i++) {
+                measurement.operation.run();
+            }
+            allocated = THREADS.getThreadAllocatedBytes(threadID) - before;
+        } else {
+            for (int i = 0; i < measurement.iterations; i++) {
+                measurement.prepare.run();
+                long before = THREADS.getThreadAllocatedBytes(threadID);
+                measurement.operation.run();
+                allocated += THREADS.getThreadAllocatedBytes(threadID) - before;
+            }
+        }
+        return allocated / measurement.iterations;
+    }
+
+    private boolean verify(Properties budgets, Map<String, Long> measured) {
+        boolean passed = true;
+        System.out.printf("%-36s %14s %14s%n", "Operation", "Bytes/op", "Budget");
+        for (Map.Entry<String, Long> entry : measured.entrySet()) {
+            String budget = budgets.getProperty(entry.getKey());
+            String result;
+            if (budget == null) {
+                result = "NO BUDGET";
+                passed = false;
+            } else if (entry.getValue() > Long.parseLong(budget)) {
+                result = "EXCEEDED";
+                passed = false;
+            } else {
+                result = "ok";
+            }
+            System.out.printf("%-36s %14d %14s  %s%n", entry.getKey(), entry.getValue(), budget, result);
+        }
+        if (!passed) {
+            System.out.println("Allocation budgets exceeded. If the increase is intended, record new budgets with "
+                + "mvn -f benchmarks/pom.xml verify -Dallocation.record=true");
+        }
+        return passed;
+    }
+
+    private static Properties readBudgets(Path file) throws IOException {
+        Properties budgets = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            budgets.load(reader);
+        }
+        return budgets;
+    }
+
+    private static void writeBudgets(Path file, Map<String, Long> measured) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# Maximum bytes allocated per operation, checked by benchmarks.AllocationBudgetCheck.\n");
+            writer.write("# Recorded with a headroom of 20%; record again with -Dallocation.record=true.\n");
+            for (Map.Entry<String, Long> entry : new TreeMap<>(measured).entrySet()) {
+                double limit = Math.max(entry.getValue() * HEADROOM, entry.getValue() + MIN_HEADROOM_BYTES);
+                long budget = (long) Math.ceil(limit / 64) * 64;
+                writer.write(entry.getKey() + "=" + budget + "\n");
+                System.out.printf("%-36s %14d -> %d%n", entry.getKey(), entry.getValue(), budget);
+            }
+        }
+        System.out.println("Budgets written to " + file);
+    }
+}
@@ -0,0 +1,129 @@
+package benchmarks;
+
+import model.Todo;
+import model.User;
+
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the data used by the benchmarks. The data is deterministic, so results of different builds are comparable.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class BenchmarkData {
+    public static final String PASSWORD = "benchmark";
+
+    private static final long SEED = 42;
+    // The root logger is referenced here, since the level would be lost if it were garbage collected
+    private static final Logger ROOT_LOGGER = Logger.getLogger("");
+
+    /**
+     * Returns a generator of the benchmark data with the default settings and a fixed seed.
+     *
+     * @return the generator
+     */
+    public static DataGenerator generator() {
+        return new DataGenerator(SEED);
+    }
+
+    /**
+     * Creates a user with the specified number of todos.
+     *
+     * @param todos the number of todos
+     * @return the user
+     */
+    public static User createUser(int todos) {
+        return generator().users(1).todosPerUser(todos).generateUsers().get(0);
+    }
+
+    /**
+     * Writes users with the specified total number of todos as the Data.xml of a web application directory, from
+     * which the User Manager loads them.
+     *
+     * @param directory    the web application directory
+     * @param todos        the total number of todos
+     * @param todosPerUser the number of todos per user
+     * @throws IOException is thrown if the data couldn't be written
+     */
+    public static void writeUsers(Path directory, int todos, int todosPerUser) throws IOException {
+        generator().users(Math.max(1, todos / todosPerUser)).todosPerUser(Math.min(todos, todosPerUser))
+            .writeXml(directory.resolve("WEB-INF/xml/Data.xml"));
+    }
+
+    /**
+     * Creates a new todo with a random category, due date and status, as the servlets do.
+     *
+     * @param random the random generator
+     * @return the todo
+     */
+    public static Todo createTodo(Random random) {
+        LocalDate dueDate = random.nextInt(10) == 0 ? null : LocalDate.now().plusDays(random.nextInt(121) - 60);
+        return new Todo("Todo " + random.nextInt(1_000_000), "Category " + random.nextInt(8), dueDate,
+            random.nextInt(5) == 0, random.nextInt(3) == 0);
+    }
+
+    public static Random random() {
+        return new Random(SEED);
+    }
+
+    /**
+     * Creates a servlet context whose real paths are resolved in the specified directory.
+     * The WEB-INF/xml directory is created, all other methods return null.
+     *
+     * @param directory the directory of the web application
+     * @return the servlet context
+     */
+    public static ServletContext servletContext(Path directory) {
+        return servletContext(directory, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a servlet context whose real paths are resolved in the specified directory and which has the specified
+     * context parameters. The WEB-INF/xml directory is created, all other methods return null.
+     * The archiving is disabled unless archiveAfterDays is specified, as the generated todos were completed on the
+     * fixed base date of the data and would all be archived on their first access.
+     *
+     * @param directory  the directory of the web application
+     * @param parameters the context parameters
+     * @return the servlet context
+     */
+    public static ServletContext servletContext(Path directory, Map<String, String> parameters) {
+        Map<String, String> initParameters = new HashMap<>(parameters);
+        initParameters.putIfAbsent("archiveAfterDays", "0");
+        try {
+            Files.createDirectories(directory.resolve("WEB-INF/xml"));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return (ServletContext) Proxy.newProxyInstance(BenchmarkData.class.getClassLoader(),
+            new Class<?>[]{ServletContext.class}, (proxy, method, args) -> {
+                if (method.getName().equals("getRealPath")) {
+                    return directory.resolve((String) args[0]).toString();
+                }
+                if (method.getName().equals("getInitParameter")) {
+                    return initParameters.get((String) args[0]);
+                }
+                return null;
+            });
+    }
+
+    /**
+     * Disables all log records below WARNING, so the benchmarks don't measure the console.
+     */
+    public static void quietLogging() {
+        ROOT_LOGGER.setLevel(Level.WARNING);
+    }
+}
@@ -0,0 +1,431 @@
+package benchmarks;
+
+import model.Todo;
+import model.TodoOrder;
+import model.User;
+import model.UserException;
+import model.UserManager;
+import model.helper.XmlHelper;
+import monitoring.MetricsRegistry;
+
+import javax.servlet.ServletContext;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Stresses the UserManager and User with concurrent registrations, authentications, mutations and reads, as
+ * concurrent Tomcat threads do, and checks the invariants afterwards:
+ * <ul>
+ * <li>no thread failed, e.g. with a ConcurrentModificationException while iterating the todos</li>
+ * <li>a snapshot of the todos never changes while it is read</li>
+ * <li>user IDs, user names and todo IDs are unique</li>
+ * <li>no added or deleted todo was lost and the version counts every mutation</li>
+ * <li>the todo lists are sorted</li>
+ * <li>the category counts match the categories of the todos, without categories no todo uses anymore</li>
+ * <li>every registered user can be looked up and authenticated</li>
+ * <li>the Data.xml is renamed once it has been distributed to the partitions</li>
+ * <li>all users and todos written by the stress test are loaded again after a restart with unique IDs, also if some
+ * partitions are empty, and no todo ID is allocated again</li>
+ * </ul>
+ * The todo cache has a small budget, so todo lists are evicted and read again while they are mutated.
+ * The check exits with status 1 if an invariant is violated, so it fails the build.
+ * <p>
+ * Usage: {@code ConcurrencyStressCheck [seconds] [threads]}, by default 10 seconds and two threads per processor.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class ConcurrencyStressCheck {
+    private static final int INITIAL_TODOS = 50;
+    private static final int CACHE_KILOBYTES = 256;
+    private static final Map<String, String> PARAMETERS =
+        Collections.singletonMap("todoCacheKilobytes", String.valueOf(CACHE_KILOBYTES));
+
+    private final Path directory;
+    private final UserManager userManager;
+    private final ServletContext servletContext;
+    private final User sharedUser;
+    private final long sharedUserInitialVersion;
+    private final Set<Integer> sharedUserInitialTodos = new HashSet<>();
+
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+    private final Map<String, String> registered = new ConcurrentHashMap<>();
+    private final Set<Integer> added = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+    private final LongAdder sharedUserMutations = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final AtomicLong writes = new AtomicLong();
+    private volatile boolean running = true;
+
+    ConcurrencyStressCheck() throws Exception {
+        directory = Files.createTempDirectory("todoapp-stress");
+        BenchmarkData.generator().users(20).todosPerUser(INITIAL_TODOS).writeXml(directory.resolve("WEB-INF/xml/Data.xml"));
+        servletContext = BenchmarkData.servletContext(directory, PARAMETERS);
+        userManager = UserManager.getInstance(servletContext);
+        sharedUser = userManager.getUser(0);
+        sharedUserInitialVersion = sharedUser.getVersion();
+        for (Todo todo : sharedUser.getTodos()) {
+            sharedUserInitialTodos.add(todo.getTodoID());
+        }
+        for (User user : userManager.getUsers()) {
+            registered.put(user.getUserName(), BenchmarkData.PASSWORD);
+        }
+    }
+
+    /**
+     * Runs the check.
+     *
+     * @param args the duration in seconds and the number of threads
+     * @throws Exception is thrown if the check couldn't be run
+     */
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 2 * Runtime.getRuntime().availableProcessors();
+        BenchmarkData.quietLogging();
+        ConcurrencyStressCheck check = new ConcurrencyStressCheck();
+        check.run(seconds, Math.max(4, threads));
+        if (!check.verify()) {
+            System.exit(1);
+        }
+    }
+
+    void run(int seconds, int threads) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        int writers = Math.max(1, threads / 2);
+        for (int i = 0; i < threads; i++) {
+            int id = i;
+            Runnable task = (i < writers) ? () -> write(id) : (i == writers) ? this::register : () -> read(id);
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    task.run();
+                } catch (Throwable ex) {
+                    failures.add(Thread.currentThread().getName() + ": " + ex);
+                }
+            }, "stress-" + i));
+        }
+        workers.add(new Thread(this::persist, "stress-persist"));
+        workers.forEach(Thread::start);
+        start.countDown();
+        TimeUnit.SECONDS.sleep(seconds);
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.MINUTES.toMillis(1));
+            if (worker.isAlive()) {
+                failures.add(worker.getName() + ": did not terminate, possibly a deadlock");
+            }
+        }
+    }
+
+    /**
+     * Adds, updates and deletes todos of the shared user and of an own user.
+     */
+    private void write(int id) {
+        Random random = new Random(id);
+        User ownUser = userManager.getUser(1 + id % 19);
+        List<Todo> ownTodos = new ArrayList<>();
+        while (running) {
+            Todo todo = BenchmarkData.createTodo(random);
+            sharedUser.addTodo(todo);
+            added.add(todo.getTodoID());
+            ownTodos.add(todo);
+            sharedUserMutations.increment();
+            ownUser.addTodo(BenchmarkData.createTodo(random));
+
+            Todo existing = sharedUser.getTodo(ownTodos.get(random.nextInt(ownTodos.size())).getTodoID());
+            if (existing != null) {
+                Todo changed = new Todo(existing);
+                changed.setImportant(!changed.isImportant());
+                changed.setCategory("Category " + random.nextInt(8));
+                if (sharedUser.updateTodo(changed, User.ANY_VERSION)) {
+                    sharedUserMutations.increment();
+                } else {
+                    failures.add("existing todo " + changed.getTodoID() + " not updated");
+                }
+            }
+            if (random.nextBoolean()) {
+                Todo removed = ownTodos.remove(random.nextInt(ownTodos.size()));
+                if (sharedUser.deleteTodo(removed, User.ANY_VERSION)) {
+                    sharedUserMutations.increment();
+                } else {
+                    failures.add("existing todo " + removed.getTodoID() + " not deleted");
+                }
+                deleted.add(removed.getTodoID());
+                // a todo which no longer exists is neither updated nor deleted, and the version stays the same
+                if (sharedUser.updateTodo(removed, User.ANY_VERSION) || sharedUser.deleteTodo(removed, User.ANY_VERSION)) {
+                    failures.add("deleted todo " + removed.getTodoID() + " changed the list");
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers new users and authenticates them.
+     */
+    private void register() {
+        int count = 0;
+        while (running) {
+            String name = "stress" + count++;
+            try {
+                userManager.register(name, BenchmarkData.PASSWORD);
+                registered.put(name, BenchmarkData.PASSWORD);
+                userManager.authenticate(name, BenchmarkData.PASSWORD);
+            } catch (UserException ex) {
+                failures.add("register " + name + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the todos of the shared user as the servlets and views do.
+     */
+    private void read(int id) {
+        String[] statuses = {null, "complete", "incomplete", "overdue", "important"};
+        TodoOrder[] orders = TodoOrder.values();
+        Random random = new Random(id);
+        while (running) {
+            long version = sharedUser.getVersion();
+            List<Todo> snapshot = sharedUser.getTodos();
+            int size = snapshot.size();
+            for (Todo todo : snapshot) {
+                if (todo.getTitle() == null) {
+                    failures.add("todo without title");
+                }
+            }
+            if (snapshot.size() != size) {
+                failures.add("snapshot changed while it was read");
+            }
+            if (sharedUser.getVersion() < version) {
+                failures.add("version went backwards");
+            }
+            sharedUser.getTodos("Category " + random.nextInt(8), statuses[random.nextInt(statuses.length)],
+                orders[random.nextInt(orders.length)]);
+            sharedUser.getDistinctCategories();
+            sharedUser.getTodosStatistics(null, "incomplete");
+            sharedUser.hasCompletedTodos();
+            sharedUser.getTodo(random.nextInt(1000));
+            userManager.getUser(random.nextInt(40));
+            reads.increment();
+        }
+    }
+
+    /**
+     * Writes the data while it is mutated, as the servlets do after every mutation.
+     */
+    private void persist() {
+        while (running) {
+            try {
+                userManager.writeData(servletContext);
+                writes.incrementAndGet();
+                TimeUnit.MILLISECONDS.sleep(50);
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RuntimeException ex) {
+                failures.add("persist: " + ex);
+            }
+        }
+    }
+
+    boolean verify() throws Exception {
+        Set<Integer> userIDs = new HashSet<>();
+        Set<String> userNames = new HashSet<>();
+        Set<Integer> todoIDs = new HashSet<>();
+        for (User user : userManager.getUsers()) {
+            check(userIDs.add(user.getUserID()), "duplicate user ID " + user.getUserID());
+            check(userNames.add(user.getUserName().toLowerCase()), "duplicate user name " + user.getUserName());
+            List<Todo> todos = user.getTodos();
+            List<Todo> sorted = new ArrayList<>(todos);
+            Collections.sort(sorted);
+            check(sorted.equals(todos), "todos of user " + user.getUserID() + " are not sorted");
+            for (TodoOrder order : TodoOrder.values()) {
+                sorted.sort(order.comparator());
+                check(sorted.equals(user.getTodos(null, null, order)), "todos of user " + user.getUserID()
+                    + " are not sorted by " + order);
+            }
+            Map<String, Integer> categoryCounts = new HashMap<>();
+            for (Todo todo : todos) {
+                check(todoIDs.add(todo.getTodoID()), "duplicate todo ID " + todo.getTodoID());
+                if (todo.getCategory() != null && !todo.getCategory().isEmpty()) {
+                    categoryCounts.merge(todo.getCategory(), 1, Integer::sum);
+                }
+            }
+            check(categoryCounts.equals(user.getCategoryCounts()), "category counts of user " + user.getUserID() + " are "
+                + user.getCategoryCounts() + " instead of " + categoryCounts);
+        }
+        Set<Integer> expected = new HashSet<>(sharedUserInitialTodos);
+        expected.addAll(added);
+        expected.removeAll(deleted);
+        Set<Integer> actual = new HashSet<>();
+        for (Todo todo : sharedUser.getTodos()) {
+            actual.add(todo.getTodoID());
+        }
+        check(actual.equals(expected), "shared user has " + actual.size() + " todos instead of " + expected.size()
+            + " (lost or resurrected todos)");
+        check(sharedUser.getVersion() - sharedUserInitialVersion == sharedUserMutations.sum(), "shared user version "
+            + (sharedUser.getVersion() - sharedUserInitialVersion) + " instead of " + sharedUserMutations.sum() + " mutations");
+        for (Map.Entry<String, String> entry : registered.entrySet()) {
+            try {
+                User user = userManager.authenticate(entry.getKey(), entry.getValue());
+                check(userManager.getUser(user.getUserID()) == user, "user " + entry.getKey() + " not found by ID");
+            } catch (UserException ex) {
+                failures.add("user " + entry.getKey() + " not authenticated: " + ex.getMessage());
+            }
+        }
+        userManager.writeData(servletContext);
+        int persistedUsers = 0;
+        for (int i = 0; i < userManager.getPartitionCount(); i++) {
+            persistedUsers += XmlHelper.readXmlData(servletContext, "WEB-INF/xml/Data-" + i + ".xml").getUsers().size();
+        }
+        check(persistedUsers == registered.size(), persistedUsers + " users persisted instead of " + registered.size());
+        check(!Files.exists(directory.resolve("WEB-INF/xml/Data.xml"))
+            && Files.exists(directory.resolve("WEB-INF/xml/Data.xml.migrated")), "Data.xml not renamed after its migration");
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        long evictions = metrics.counter("todoapp_user_evictions_total", "").sum();
+        long reloads = metrics.counter("todoapp_user_reloads_total", "").sum();
+        check(evictions > 0, "no todo list was evicted within the budget of " + CACHE_KILOBYTES + " KB");
+
+        // the written data is read again as after a restart
+        failures.addAll(restart(directory, registered.size(), todoIDs.size()));
+
+        // a single user leaves all partitions but one empty
+        Path small = Files.createTempDirectory("todoapp-restart");
+        BenchmarkData.generator().users(1).todosPerUser(5).ratios(0.1, 0.6, 0.2).writeXml(small.resolve("WEB-INF/xml/Data.xml"));
+        for (int i = 0; i < 2; i++) {
+            failures.addAll(restart(small, 1, 5 + i));
+        }
+        // without high-water marks, the IDs are recovered from the todo files, and completed todos without the day of
+        // completion are stamped when they are loaded
+        removeLegacyElements(small.resolve("WEB-INF/xml"));
+        failures.addAll(restart(small, 1, 7));
+
+        System.out.println("Stress test: " + added.size() + " todos added, " + deleted.size() + " deleted, "
+            + registered.size() + " users, " + reads.sum() + " read rounds, " + writes.get() + " writes of the data, "
+            + evictions + " evictions, " + reloads + " reloads");
+        failures.stream().distinct().limit(20).forEach(failure -> System.out.println("FAILED: " + failure));
+        return failures.isEmpty();
+    }
+
+    /**
+     * Starts the application again on the data of a directory, as after a restart of Tomcat: the classes of the
+     * application are loaded by a new class loader, so the UserManager and the ID allocators start from the files as
+     * in a new process.
+     *
+     * @param directory     the directory of the application
+     * @param expectedUsers the number of users which must be loaded
+     * @param expectedTodos the number of todos which must be loaded
+     * @return the violated invariants
+     */
+    private static List<String> restart(Path directory, int expectedUsers, int expectedTodos) throws Exception {
+        List<URL> classPath = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            classPath.add(Paths.get(entry).toUri().toURL());
+        }
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(classPath.toArray(new URL[0]), ClassLoader.getPlatformClassLoader())) {
+            thread.setContextClassLoader(loader);
+            Method check = loader.loadClass(ConcurrencyStressCheck.class.getName())
+                .getDeclaredMethod("checkRestarted", Path.class, int.class, int.class);
+            check.setAccessible(true);
+            @SuppressWarnings("unchecked")
+            List<String> failures = (List<String>) check.invoke(null, directory, expectedUsers, expectedTodos);
+            return failures;
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * Removes the elements which data written by older versions of the application doesn't contain: the high-water
+     * marks and the days of completion.
+     */
+    private static void removeLegacyElements(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String data = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                data = data.replaceAll("\\s*<\\w+IDHighWaterMark>\\d+</\\w+IDHighWaterMark>", "");
+                data = data.replaceAll("\\s*<completedOn>[^<]*</completedOn>", "");
+                Files.write(file, data.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Loads the data in the restarted application and checks that no user and no todo was lost and the IDs are unique.
+     * Reading the todo lists for the first time must not be counted as reloads.
+     * Then todos are added and written as the servlets do, so the next restart checks that their IDs are not
+     * allocated again.
+     */
+    @SuppressWarnings("unused")
+    private static List<String> checkRestarted(Path directory, int expectedUsers, int expectedTodos) {
+        List<String> failures = new ArrayList<>();
+        ServletContext servletContext = BenchmarkData.servletContext(directory, PARAMETERS);
+        UserManager userManager = UserManager.getInstance(servletContext);
+        List<User> users = userManager.getUsers();
+        if (users.size() != expectedUsers) {
+            failures.add("restart: " + users.size() + " users loaded instead of " + expectedUsers);
+        }
+        Set<Integer> userIDs = new HashSet<>();
+        Set<Integer> todoIDs = new HashSet<>();
+        for (User user : users) {
+            if (!userIDs.add(user.getUserID())) {
+                failures.add("restart: duplicate user ID " + user.getUserID());
+            }
+            for (Todo todo : user.getTodos()) {
+                if (!todoIDs.add(todo.getTodoID())) {
+                    failures.add("restart: duplicate todo ID " + todo.getTodoID());
+                }
+                if (todo.isCompleted() && todo.getCompletedOn() == null) {
+                    failures.add("restart: completed todo " + todo.getTodoID() + " has no day of completion");
+                }
+            }
+        }
+        if (todoIDs.size() != expectedTodos) {
+            failures.add("restart: " + todoIDs.size() + " todos loaded instead of " + expectedTodos);
+        }
+        long reloads = MetricsRegistry.getInstance().counter("todoapp_user_reloads_total", "").sum();
+        if (reloads != 0) {
+            failures.add("restart: " + reloads + " todo lists read for the first time counted as reloads");
+        }
+        for (User user : users.subList(0, Math.min(3, users.size()))) {
+            Todo todo = new Todo("Added after a restart");
+            if (todoIDs.contains(todo.getTodoID())) {
+                failures.add("restart: todo ID " + todo.getTodoID() + " allocated again");
+            }
+            user.addTodo(todo);
+            userManager.writeData(servletContext, user);
+        }
+        return failures;
+    }
+
+    private void check(boolean condition, String failure) {
+        if (!condition) {
+            failures.add(failure);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import model.Todo;
+import model.User;
+import model.helper.PasswordHelper;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Generates users and todos for benchmarks and load tests. The same seed and settings always generate the same data.
+ * <p>
+ * The number of todos per user follows a Zipf distribution: with a skew of 0 every user has the same number of todos,
+ * with a skew of 1 the user with the most todos has twice as many as the second and ten times as many as the tenth.
+ * The data is either created in memory or streamed to a Data.xml, so data sets larger than the heap can be written.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar benchmarks.DataGenerator --users=1000 --todosPerUser=100 --skew=1
+ * --out=src/main/webapp/WEB-INF/xml/Data.xml}
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class DataGenerator {
+    // a fixed day rather than today, so the same seed generates the same due dates and days of completion
+    private static final LocalDate DEFAULT_BASE_DATE = LocalDate.of(2021, 1, 4);
+
+    private final long seed;
+    private int users = 100;
+    private int todosPerUser = 10;
+    private double skew;
+    private int categories = 8;
+    private LocalDate baseDate = DEFAULT_BASE_DATE;
+    private int dueDateSpreadDays = 60;
+    private double noDueDateRatio = 0.1;
+    private double completedRatio = 0.3;
+    private double importantRatio = 0.2;
+    private String password = BenchmarkData.PASSWORD;
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    public DataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public DataGenerator users(int users) {
+        this.users = users;
+        return this;
+    }
+
+    /**
+     * Sets the average number of todos per user.
+     *
+     * @param todosPerUser the average number of todos
+     * @return this generator
+     */
+    public DataGenerator todosPerUser(int todosPerUser) {
+        this.todosPerUser = todosPerUser;
+        return this;
+    }
+
+    /**
+     * Sets the exponent of the Zipf distribution of the todos to the users.
+     *
+     * @param skew 0 for the same number of todos for every user, larger values for fewer users with more todos
+     * @return this generator
+     */
+    public DataGenerator skew(double skew) {
+        this.skew = skew;
+        return this;
+    }
+
+    public DataGenerator categories(int categories) {
+        this.categories = categories;
+        return this;
+    }
+
+    /**
+     * Sets the range of the due dates. They are distributed uniformly from the specified number of days before to
+     * the specified number of days after the base date.
+     *
+     * @param baseDate          the base date, by default 2021-01-04
+     * @param dueDateSpreadDays the number of days
+     * @return this generator
+     */
+    public DataGenerator dueDates(LocalDate baseDate, int dueDateSpreadDays) {
+        this.baseDate = baseDate;
+        this.dueDateSpreadDays = dueDateSpreadDays;
+        return this;
+    }
+
+    /**
+     * Sets the ratios of todos without due date, of completed and of important todos.
+     *
+     * @param noDueDateRatio the ratio of todos without due date
+     * @param completedRatio the ratio of completed todos
+     * @param importantRatio the ratio of important todos
+     * @return this generator
+     */
+    public DataGenerator ratios(double noDueDateRatio, double completedRatio, double importantRatio) {
+        this.noDueDateRatio = noDueDateRatio;
+        this.completedRatio = completedRatio;
+        this.importantRatio = importantRatio;
+        return this;
+    }
+
+    /**
+     * Sets the password of all users. It is hashed once with a salt derived from the seed, so all users share the
+     * same hash.
+     *
+     * @param password the password
+     * @return this generator
+     */
+    public DataGenerator password(String password) {
+        this.password = password;
+        return this;
+    }
+
+    /**
+     * Returns the total number of todos, which is also the first todo ID not in use.
+     *
+     * @return the total number of todos
+     */
+    public int getTotalTodos() {
+        return users * todosPerUser;
+    }
+
+    /**
+     * Generates the users in memory. The ID allocators continue after the generated IDs.
+     *
+     * @return the users
+     */
+    public List<User> generateUsers() {
+        List<User> result = new ArrayList<>(users);
+        forEachUser(result::add);
+        User.setUserCounter(users);
+        Todo.setTodoCounter(getTotalTodos());
+        return result;
+    }
+
+    /**
+     * Generates the users one by one. The users have the IDs 0 to users - 1, the todos 0 to total todos - 1.
+     *
+     * @param consumer the consumer of the users
+     */
+    public void forEachUser(Consumer<User> consumer) {
+        Random random = new Random(seed);
+        int[] counts = distributeTodos(random);
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        String passwordHash = PasswordHelper.hash(password, salt);
+        int todoID = 0;
+        for (int userID = 0; userID < users; userID++) {
+            List<Todo> todos = new ArrayList<>(counts[userID]);
+            for (int i = 0; i < counts[userID]; i++) {
+                todos.add(createTodo(todoID++, userID, random));
+            }
+            Collections.sort(todos);
+            Map<String, Object> properties = new LinkedHashMap<>();
+            properties.put("userID", userID);
+            properties.put("userName", "user" + userID);
+            properties.put("password", passwordHash);
+            properties.put("todos", todos);
+            consumer.accept(mapper.convertValue(properties, User.class));
+        }
+    }
+
+    /**
+     * Creates a todo with a random category, due date and status, using the settings of this generator.
+     *
+     * @param todoID the ID of the todo
+     * @param userID the ID of the user
+     * @param random the random generator
+     * @return the todo
+     */
+    public Todo createTodo(int todoID, int userID, Random random) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("todoID", todoID);
+        properties.put("userID", userID);
+        properties.put("title", "Todo " + Integer.toString(random.nextInt(1_000_000), 36));
+        properties.put("category", "Category " + random.nextInt(Math.max(1, categories)));
+        if (random.nextDouble() >= noDueDateRatio) {
+            properties.put("dueDate", baseDate.plusDays(random.nextInt(2 * dueDateSpreadDays + 1) - dueDateSpreadDays).toString());
+        }
+        boolean completed = random.nextDouble() < completedRatio;
+        properties.put("completed", completed);
+        if (completed) {
+            // completed todos were completed on the base date, so they are archived relative to it
+            properties.put("completedOn", baseDate.toString());
+        }
+        properties.put("important", random.nextDouble() < importantRatio);
+        return mapper.convertValue(properties, Todo.class);
+    }
+
+    /**
+     * Writes the users to a file in the format of the Data.xml, including the high-water marks of the IDs.
+     *
+     * @param file the file
+     * @throws IOException is thrown when the file couldn't be written
+     */
+    public void writeXml(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("root");
+            writeElement(writer, "userIDHighWaterMark", users);
+            writeElement(writer, "todoIDHighWaterMark", getTotalTodos());
+            writer.writeStartElement("users");
+            forEachUser(user -> {
+                try {
+                    writeUser(writer, user);
+                } catch (XMLStreamException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private static void writeUser(XMLStreamWriter writer, User user) throws XMLStreamException {
+        writer.writeStartElement("user");
+        writeElement(writer, "userID", user.getUserID());
+        writeElement(writer, "userName", user.getUserName());
+        writeElement(writer, "password", user.getPassword());
+        writer.writeStartElement("todos");
+        for (Todo todo : user.getTodos()) {
+            writer.writeStartElement("todo");
+            writeElement(writer, "todoID", todo.getTodoID());
+            writeElement(writer, "userID", user.getUserID());
+            writeElement(writer, "title", todo.getTitle());
+            writeElement(writer, "category", todo.getCategory());
+            if (todo.getDueDate() != null) {
+                writeElement(writer, "dueDate", todo.getDueDate());
+            }
+            writeElement(writer, "completed", todo.isCompleted());
+            if (todo.getCompletedOn() != null) {
+                writeElement(writer, "completedOn", todo.getCompletedOn());
+            }
+            writeElement(writer, "important", todo.isImportant());
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, Object value) throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(String.valueOf(value));
+        writer.writeEndElement();
+    }
+
+    /**
+     * Distributes the total number of todos to the users by a Zipf distribution. The ranks are shuffled, so the
+     * users with many todos are spread over the IDs.
+     */
+    private int[] distributeTodos(Random random) {
+        int[] counts = new int[users];
+        double[] weights = new double[users];
+        double sum = 0;
+        for (int rank = 0; rank < users; rank++) {
+            weights[rank] = 1 / Math.pow(rank + 1, skew);
+            sum += weights[rank];
+        }
+        int total = getTotalTodos();
+        int assigned = 0;
+        for (int rank = 0; rank < users; rank++) {
+            counts[rank] = (int) (total * weights[rank] / sum);
+            assigned += counts[rank];
+        }
+        for (int rank = 0; assigned < total; rank = (rank + 1) % users, assigned++) {
+            counts[rank]++;
+        }
+        for (int i = users - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int count = counts[i];
+            counts[i] = counts[j];
+            counts[j] = count;
+        }
+        return counts;
+    }
+
+    /**
+     * Writes a Data.xml with the settings passed as arguments, e.g. --users=1000.
+     *
+     * @param args the settings: seed, users, todosPerUser, skew, categories, baseDate, dueDateSpreadDays,
+     *             noDueDateRatio, completedRatio, importantRatio, password and out (the file)
+     * @throws IOException is thrown when the file couldn't be written
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+            options.put(option[0], option[1]);
+        }
+        DataGenerator generator = new DataGenerator(Long.parseLong(options.getOrDefault("seed", "42")))
+            .users(Integer.parseInt(options.getOrDefault("users", "100")))
+            .todosPerUser(Integer.parseInt(options.getOrDefault("todosPerUser", "10")))
+            .skew(Double.parseDouble(options.getOrDefault("skew", "0")))
+            .categories(Integer.parseInt(options.getOrDefault("categories", "8")))
+            .dueDates(LocalDate.parse(options.getOrDefault("baseDate", DEFAULT_BASE_DATE.toString())),
+                Integer.parseInt(options.getOrDefault("dueDateSpreadDays", "60")))
+            .ratios(Double.parseDouble(options.getOrDefault("noDueDateRatio", "0.1")),
+                Double.parseDouble(options.getOrDefault("completedRatio", "0.3")),
+                Double.parseDouble(options.getOrDefault("importantRatio", "0.2")))
+            .password(options.getOrDefault("password", BenchmarkData.PASSWORD));
+        Path file = Paths.get(options.getOrDefault("out", "Data.xml"));
+        long start = System.currentTimeMillis();
+        generator.writeXml(file);
+        System.out.println("Wrote " + generator.getTotalTodos() + " todos of " + generator.users + " users to " + file
+            + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import controller.rest.helper.JsonHelper;
+import model.Todo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the JSON serialization of the todo list and of a single todo of the list.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class JsonBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int todos;
+
+    private List<Todo> list;
+    private Todo todo;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        list = BenchmarkData.createUser(todos).getTodos();
+        todo = list.get(list.size() / 2);
+    }
+
+    @Benchmark
+    public String writeTodoList() {
+        return JsonHelper.writeTodoJsonData(list);
+    }
+
+    @Benchmark
+    public String writeTodo() {
+        return JsonHelper.writeTodoJsonData(todo);
+    }
+}
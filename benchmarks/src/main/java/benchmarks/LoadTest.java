@@ -0,0 +1,383 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import monitoring.Histogram;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.ApplicationParameter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Runs the war in an embedded Tomcat on localhost with a generated data set and drives the REST API with a
+ * configurable number of concurrent clients and mix of operations. Every client waits for its response before it
+ * sends the next request. The throughput, latency percentiles and status codes per operation are written as JSON
+ * report, so the results of two builds can be compared.
+ * <p>
+ * Usage: {@code java -cp benchmarks/target/benchmarks.jar benchmarks.LoadTest --concurrency=32 --duration=60
+ * --mix=list:50,get:15,categories:10,create:10,update:10,delete:4,register:1 --report=target/load-report.json}
+ * <p>
+ * Context parameters of the application can be set with {@code --param.<name>=<value>}. The rate limits are disabled
+ * unless they are set, so the load test measures the application instead of the limits. The archiving is disabled as
+ * well, as the generated todos were completed on the fixed base date of the data and would all be archived.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class LoadTest {
+    private static final String CONTEXT_PATH = "/todoapp";
+    private static final String CONTENT_TYPE = "application/json";
+    private static final String[] OPERATIONS = {"list", "get", "categories", "create", "update", "delete", "register"};
+
+    private final Map<String, String> options;
+    private final Map<String, Integer> mix = new LinkedHashMap<>();
+    private final Map<String, Statistics> statistics = new LinkedHashMap<>();
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final int users;
+    private final String password;
+    private String baseUrl;
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.users = Integer.parseInt(options.getOrDefault("users", "100"));
+        this.password = options.getOrDefault("password", BenchmarkData.PASSWORD);
+        for (String entry : options.getOrDefault("mix", "list:50,get:15,categories:10,create:10,update:10,delete:4,register:1").split(",")) {
+            String[] weight = entry.split(":");
+            if (weight.length != 2 || !List.of(OPERATIONS).contains(weight[0])) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            }
+            mix.put(weight[0], Integer.parseInt(weight[1]));
+            statistics.put(weight[0], new Statistics());
+        }
+        if (!mix.containsKey("create") && (mix.containsKey("get") || mix.containsKey("update") || mix.containsKey("delete"))) {
+            throw new IllegalArgumentException("The mix needs create to get, update or delete todos");
+        }
+    }
+
+    /**
+     * Statistics of one operation. The latencies are recorded in nanoseconds.
+     */
+    private static class Statistics {
+        final Histogram latency = new Histogram();
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final LongAdder errors = new LongAdder();
+
+        void record(int status, long nanos) {
+            latency.record(nanos);
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            if (status < 200 || status >= 400) {
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the settings, e.g. --concurrency=32
+     * @throws Exception is thrown when the application couldn't be started or the report couldn't be written
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+            options.put(option[0], option[1]);
+        }
+        new LoadTest(options).run();
+    }
+
+    void run() throws Exception {
+        Path workDirectory = Files.createTempDirectory("todoapp-load");
+        Path appDirectory = workDirectory.resolve("todoapp");
+        unpack(Paths.get(options.getOrDefault("war", "target/todoapp.war")), appDirectory);
+        DataGenerator generator = new DataGenerator(Long.parseLong(options.getOrDefault("seed", "42")))
+            .users(users)
+            .todosPerUser(Integer.parseInt(options.getOrDefault("todosPerUser", "100")))
+            .skew(Double.parseDouble(options.getOrDefault("skew", "0")))
+            .categories(Integer.parseInt(options.getOrDefault("categories", "8")))
+            .password(password);
+        generator.writeXml(appDirectory.resolve("WEB-INF/xml/Data.xml"));
+
+        Tomcat tomcat = startTomcat(workDirectory, appDirectory);
+        try {
+            awaitReady();
+            int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+            long warmUpSeconds = Long.parseLong(options.getOrDefault("warmUp", "10"));
+            long durationSeconds = Long.parseLong(options.getOrDefault("duration", "30"));
+            ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                int client = i;
+                clients.execute(() -> runClient(client, concurrency));
+            }
+            TimeUnit.SECONDS.sleep(warmUpSeconds);
+            recording = true;
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            recording = false;
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            running = false;
+            clients.shutdown();
+            clients.awaitTermination(1, TimeUnit.MINUTES);
+            writeReport(generator, concurrency, elapsed);
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    private Tomcat startTomcat(Path workDirectory, Path appDirectory) throws LifecycleException {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(workDirectory.resolve("tomcat").toString());
+        tomcat.setPort(Integer.parseInt(options.getOrDefault("port", "0")));
+        tomcat.getConnector();
+        // Only the web.xml and the annotations of the application, the JSP views are not needed
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+        Context context = tomcat.addWebapp(CONTEXT_PATH, appDirectory.toString());
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("readsPerSecond", "0");
+        parameters.put("writesPerSecond", "0");
+        parameters.put("archiveAfterDays", "0");
+        parameters.put("slowTraceFile", workDirectory.resolve("slow-traces.%g.log").toString());
+        options.forEach((name, value) -> {
+            if (name.startsWith("param.")) {
+                parameters.put(name.substring("param.".length()), value);
+            }
+        });
+        parameters.forEach((name, value) -> {
+            ApplicationParameter parameter = new ApplicationParameter();
+            parameter.setName(name);
+            parameter.setValue(value);
+            // the value set here replaces the value of the web.xml
+            parameter.setOverride(false);
+            context.addApplicationParameter(parameter);
+        });
+        tomcat.start();
+        baseUrl = "http://localhost:" + tomcat.getConnector().getLocalPort() + CONTEXT_PATH;
+        return tomcat;
+    }
+
+    private void awaitReady() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/health/ready")).build();
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+        while (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("The application did not become ready");
+            }
+            TimeUnit.MILLISECONDS.sleep(200);
+        }
+    }
+
+    /**
+     * Sends requests until the load test ends. Client i uses the users i, i + concurrency, ... so the todos created by
+     * a client are only updated and deleted by the same client.
+     */
+    private void runClient(int clientID, int concurrency) {
+        Random random = new Random(clientID);
+        List<Integer> ownUsers = new ArrayList<>();
+        for (int userID = clientID % users; userID < users; userID += concurrency) {
+            ownUsers.add(userID);
+        }
+        Map<Integer, Deque<Integer>> createdTodos = new LinkedHashMap<>();
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int registered = 0;
+        while (running) {
+            int userID = ownUsers.get(random.nextInt(ownUsers.size()));
+            String authorization = "Basic " + Base64.getEncoder()
+                .encodeToString(("user" + userID + ":" + password).getBytes(StandardCharsets.UTF_8));
+            Deque<Integer> todos = createdTodos.computeIfAbsent(userID, u -> new ArrayDeque<>());
+            String operation = pick(random.nextInt(totalWeight));
+            if ((operation.equals("get") || operation.equals("update") || operation.equals("delete")) && todos.isEmpty()) {
+                operation = "create";
+            }
+            HttpRequest.Builder request;
+            switch (operation) {
+                case "get":
+                    request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/todos/" + todos.peekLast())).GET();
+                    break;
+                case "categories":
+                    request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/categories")).GET();
+                    break;
+                case "create":
+                    request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/todos"))
+                        .POST(HttpRequest.BodyPublishers.ofString(todoJson(random)));
+                    break;
+                case "update":
+                    request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/todos/" + todos.peekLast()))
+                        .PUT(HttpRequest.BodyPublishers.ofString(todoJson(random)));
+                    break;
+                case "delete":
+                    request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/todos/" + todos.pollFirst())).DELETE();
+                    break;
+                case "register":
+                    String body = "{\"name\":\"load" + clientID + "-" + registered++ + "-" + System.nanoTime()
+                        + "\",\"password\":\"" + password + "\"}";
+                    request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/users"))
+                        .POST(HttpRequest.BodyPublishers.ofString(body));
+                    break;
+                default:
+                    request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/todos")).GET();
+            }
+            request.header("Accept", CONTENT_TYPE).header("Content-Type", CONTENT_TYPE).timeout(Duration.ofSeconds(30));
+            if (!operation.equals("register")) {
+                request.header("Authorization", authorization);
+            }
+            long start = System.nanoTime();
+            int status;
+            String responseBody = "";
+            try {
+                HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+                status = response.statusCode();
+                responseBody = response.body();
+            } catch (IOException ex) {
+                status = 0;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long nanos = System.nanoTime() - start;
+            if (operation.equals("create") && status == 201) {
+                todos.addLast(Integer.parseInt(responseBody.trim()));
+            }
+            if (recording) {
+                statistics.get(operation).record(status, nanos);
+            }
+        }
+    }
+
+    private String pick(int value) {
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            value -= entry.getValue();
+            if (value < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty mix");
+    }
+
+    private static String todoJson(Random random) {
+        return "{\"title\":\"Load todo " + random.nextInt(1_000_000) + "\",\"category\":\"Category " + random.nextInt(8)
+            + "\",\"dueDate\":\"" + LocalDate.now().plusDays(random.nextInt(61) - 30) + "\",\"important\":"
+            + random.nextBoolean() + ",\"completed\":" + (random.nextInt(4) == 0) + "}";
+    }
+
+    private void writeReport(DataGenerator generator, int concurrency, double elapsed) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> settings = new LinkedHashMap<>(options);
+        settings.put("users", users);
+        settings.put("todos", generator.getTotalTodos());
+        settings.put("concurrency", concurrency);
+        settings.put("mix", mix);
+        report.put("settings", settings);
+        report.put("durationSeconds", round(elapsed));
+        Histogram total = new Histogram();
+        long requests = 0;
+        long errors = 0;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Map.Entry<String, Statistics> entry : statistics.entrySet()) {
+            Statistics stats = entry.getValue();
+            Map<String, Long> statuses = new TreeMap<>();
+            stats.statuses.forEach((status, count) -> statuses.put(String.valueOf(status), count.sum()));
+            Map<String, Object> operation = summary(stats.latency, stats.errors.sum(), elapsed);
+            operation.put("statuses", statuses);
+            operations.put(entry.getKey(), operation);
+            requests += stats.latency.getCount();
+            errors += stats.errors.sum();
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", requests);
+        summary.put("errors", errors);
+        summary.put("errorRate", requests > 0 ? round((double) errors / requests) : 0.0);
+        summary.put("throughputPerSecond", round(requests / elapsed));
+        report.put("total", summary);
+        report.put("operations", operations);
+
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        String json = mapper.writeValueAsString(report);
+        Path file = Paths.get(options.getOrDefault("report", "target/load-report.json"));
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+        System.out.println(json);
+        System.out.println("Report written to " + file);
+    }
+
+    /**
+     * Summarizes the latencies in milliseconds. The percentiles are the upper bounds of the histogram buckets.
+     */
+    private static Map<String, Object> summary(Histogram latency, long errors, double elapsed) {
+        long count = latency.getCount();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", count);
+        summary.put("errors", errors);
+        summary.put("errorRate", count > 0 ? round((double) errors / count) : 0.0);
+        summary.put("throughputPerSecond", round(count / elapsed));
+        Map<String, Object> millis = new LinkedHashMap<>();
+        millis.put("mean", count > 0 ? round(latency.getSum() / 1e6 / count) : 0.0);
+        millis.put("p50", round(latency.getPercentile(0.5) / 1e6));
+        millis.put("p90", round(latency.getPercentile(0.9) / 1e6));
+        millis.put("p95", round(latency.getPercentile(0.95) / 1e6));
+        millis.put("p99", round(latency.getPercentile(0.99) / 1e6));
+        millis.put("max", round(latency.getMax() / 1e6));
+        summary.put("latencyMillis", millis);
+        return summary;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static void unpack(Path war, Path directory) throws IOException {
+        if (!Files.exists(war)) {
+            throw new IOException("War not found: " + war.toAbsolutePath() + ", build it with mvn package");
+        }
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(war))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                Path target = directory.resolve(entry.getName()).normalize();
+                if (!target.startsWith(directory)) {
+                    throw new IOException("Invalid entry in war: " + entry.getName());
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import model.Todo;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks adding, updating and deleting todos.
+ * Adding and deleting change the size of the list, so each iteration is a batch of operations on a user restored
+ * from the same data. The list grows or shrinks by at most the batch size of 10 during an iteration.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = 10)
+@Measurement(iterations = 20, batchSize = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MutationBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int todos;
+
+    private User user;
+    private Todo[] existing;
+    private Random random;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        random = BenchmarkData.random();
+        user = BenchmarkData.createUser(todos);
+        List<Todo> list = user.getTodos();
+        existing = list.toArray(new Todo[0]);
+        next = 0;
+    }
+
+    @Benchmark
+    public User addTodo() {
+        user.addTodo(BenchmarkData.createTodo(random));
+        return user;
+    }
+
+    @Benchmark
+    public User updateTodo() {
+        Todo todo = new Todo(existing[next++ % existing.length]);
+        todo.setImportant(!todo.isImportant());
+        user.updateTodo(todo);
+        return user;
+    }
+
+    @Benchmark
+    public User deleteTodo() {
+        user.deleteTodo(existing[next++ % existing.length]);
+        return user;
+    }
+}
@@ -0,0 +1,236 @@
+package benchmarks;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.GenericFilter;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Minimal requests and responses to call servlets without a container. Responses are discarded; only the status is
+ * kept.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class ServletStubs {
+    private static final ServletOutputStream DISCARDING_STREAM = new ServletOutputStream() {
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    private static final PrintWriter DISCARDING_WRITER = new PrintWriter(Writer.nullWriter());
+
+    /**
+     * Initializes a servlet with the specified servlet context.
+     *
+     * @param servlet        the servlet
+     * @param servletContext the servlet context
+     * @param <T>            the type of the servlet
+     * @return the initialized servlet
+     * @throws ServletException is thrown if the servlet couldn't be initialized
+     */
+    public static <T extends HttpServlet> T init(T servlet, ServletContext servletContext) throws ServletException {
+        servlet.init((ServletConfig) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+            new Class<?>[]{ServletConfig.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getServletContext":
+                        return servletContext;
+                    case "getServletName":
+                        return servlet.getClass().getSimpleName();
+                    case "getInitParameterNames":
+                        return Collections.emptyEnumeration();
+                    default:
+                        return null;
+                }
+            }));
+        return servlet;
+    }
+
+    /**
+     * Initializes a filter with the specified servlet context.
+     *
+     * @param filter         the filter
+     * @param servletContext the servlet context
+     * @param <T>            the type of the filter
+     * @return the initialized filter
+     * @throws ServletException is thrown if the filter couldn't be initialized
+     */
+    public static <T extends GenericFilter> T init(T filter, ServletContext servletContext) throws ServletException {
+        filter.init((FilterConfig) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+            new Class<?>[]{FilterConfig.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getServletContext":
+                        return servletContext;
+                    case "getFilterName":
+                        return filter.getClass().getSimpleName();
+                    case "getInitParameterNames":
+                        return Collections.emptyEnumeration();
+                    default:
+                        return null;
+                }
+            }));
+        return filter;
+    }
+
+    /**
+     * Creates an authenticated JSON request of the todos path, as it is passed on by the AuthenticationFilter.
+     *
+     * @param method   the HTTP method
+     * @param pathInfo the path after the servlet path, or null
+     * @param userID   the ID of the authenticated user
+     * @param body     the request body, or null
+     * @return the request
+     */
+    public static HttpServletRequest request(String method, String pathInfo, int userID, String body) {
+        return request(method, "/api/todos", pathInfo,
+            Map.of("Accept", "application/json", "Content-Type", "application/json"), userID, body);
+    }
+
+    /**
+     * Creates a request with the specified headers. The user ID is the attribute set by the AuthenticationFilter.
+     *
+     * @param method      the HTTP method
+     * @param servletPath the servlet path, e.g. /api/todos
+     * @param pathInfo    the path after the servlet path, or null
+     * @param headers     the headers, the content type is taken from the Content-Type header
+     * @param userID      the ID of the authenticated user, or null if the request is not authenticated yet
+     * @param body        the request body, or null
+     * @return the request
+     */
+    public static HttpServletRequest request(String method, String servletPath, String pathInfo,
+                                             Map<String, String> headers, Integer userID, String body) {
+        Map<String, String> headerMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headerMap.putAll(headers);
+        return (HttpServletRequest) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+            new Class<?>[]{HttpServletRequest.class}, (proxy, m, args) -> {
+                switch (m.getName()) {
+                    case "getMethod":
+                        return method;
+                    case "getServletPath":
+                        return servletPath;
+                    case "getPathInfo":
+                        return pathInfo;
+                    case "getHeader":
+                        return headerMap.get((String) args[0]);
+                    case "getContentType":
+                        return headerMap.get("Content-Type");
+                    case "getAttribute":
+                        return "userID".equals(args[0]) ? userID : null;
+                    case "getReader":
+                        return new BufferedReader(new StringReader(body != null ? body : ""));
+                    case "getProtocol":
+                        return "HTTP/1.1";
+                    case "getDateHeader":
+                    case "getIntHeader":
+                        return -1;
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    /**
+     * A response which discards its body and keeps the status.
+     */
+    public static class Response {
+        private int status = HttpServletResponse.SC_OK;
+        private final HttpServletResponse response = (HttpServletResponse) Proxy.newProxyInstance(
+            ServletStubs.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setStatus":
+                        status = (Integer) args[0];
+                        return null;
+                    case "getStatus":
+                        return status;
+                    case "getWriter":
+                        return DISCARDING_WRITER;
+                    case "getOutputStream":
+                        return DISCARDING_STREAM;
+                    case "isCommitted":
+                        return false;
+                    default:
+                        return null;
+                }
+            });
+
+        public HttpServletResponse get() {
+            return response;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * Resets the status, so the response can be used for the next request.
+         */
+        public void reset() {
+            status = HttpServletResponse.SC_OK;
+        }
+    }
+
+    /**
+     * Calls a filter.
+     *
+     * @param filter   the filter
+     * @param request  the request
+     * @param response the response
+     * @param chain    the rest of the chain, e.g. a chain which does nothing to call the filter alone
+     * @throws IOException is thrown if the filter failed
+     */
+    public static void filter(Filter filter, HttpServletRequest request, Response response, FilterChain chain) throws IOException {
+        response.reset();
+        try {
+            filter.doFilter(request, response.get(), chain);
+        } catch (ServletException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Calls a servlet.
+     *
+     * @param servlet  the servlet
+     * @param request  the request
+     * @param response the response
+     * @throws IOException is thrown if the servlet failed
+     */
+    public static void service(HttpServlet servlet, HttpServletRequest request, Response response) throws IOException {
+        response.reset();
+        try {
+            servlet.service(request, response.get());
+        } catch (ServletException ex) {
+            throw new IOException(ex);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import model.Todo;
+import model.TodoOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks sorting todos in the orders of TodoOrder, whose comparators use the precomputed sort keys of the todos.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SortBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int todos;
+
+    @Param({"DUE", "TITLE", "IMPORTANT", "CREATED"})
+    public TodoOrder order;
+
+    private Todo[] shuffled;
+    private List<Todo> sorted;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        sorted = new ArrayList<>(BenchmarkData.createUser(todos).getTodos());
+        List<Todo> list = new ArrayList<>(sorted);
+        Collections.shuffle(list, BenchmarkData.random());
+        shuffled = list.toArray(new Todo[0]);
+    }
+
+    /**
+     * Sorts shuffled todos, as a user does when an order is requested for the first time. Copying them into a new
+     * list is part of the measurement.
+     *
+     * @return the sorted todos
+     */
+    @Benchmark
+    public List<Todo> sortShuffled() {
+        List<Todo> list = new ArrayList<>(shuffled.length);
+        Collections.addAll(list, shuffled);
+        list.sort(order.comparator());
+        return list;
+    }
+
+    /**
+     * Sorts todos which are already sorted, as a user does with a todo list read from its file.
+     *
+     * @return the sorted todos
+     */
+    @Benchmark
+    public List<Todo> sortSorted() {
+        sorted.sort(order.comparator());
+        return sorted;
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import model.Todo;
+import model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks filtering the todos of a user.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int todos;
+
+    /**
+     * The filter of getTodos: none, category or one of the statuses.
+     */
+    @Param({"none", "category", "complete", "incomplete", "overdue", "important"})
+    public String filter;
+
+    private User user;
+    private String category;
+    private String status;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        user = BenchmarkData.createUser(todos);
+        category = filter.equals("category") ? "Category 0" : null;
+        status = (category == null && !filter.equals("none")) ? filter : null;
+    }
+
+    @Benchmark
+    public List<Todo> getTodos() {
+        return user.getTodos(category, status);
+    }
+}
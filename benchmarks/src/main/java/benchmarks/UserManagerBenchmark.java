@@ -0,0 +1,74 @@
+package benchmarks;
+
+import model.User;
+import model.UserException;
+import model.UserManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks looking up and authenticating users. The todos are distributed to users with 10 todos each, so the
+ * number of users grows with the data size. The users are looked up in a fixed pseudo-random order.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserManagerBenchmark {
+    private static final int TODOS_PER_USER = 10;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int todos;
+
+    private UserManager userManager;
+    private int[] userIDs;
+    private String[] userNames;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.quietLogging();
+        Path directory = Files.createTempDirectory("todoapp");
+        BenchmarkData.writeUsers(directory, todos, TODOS_PER_USER);
+        userManager = UserManager.getInstance(BenchmarkData.servletContext(directory));
+        List<User> users = userManager.getUsers();
+        userIDs = BenchmarkData.random().ints(1024, 0, users.size()).map(i -> users.get(i).getUserID()).toArray();
+        userNames = BenchmarkData.random().ints(1024, 0, users.size()).mapToObj(i -> users.get(i).getUserName()).toArray(String[]::new);
+    }
+
+    @Benchmark
+    public User getUser() {
+        return userManager.getUser(userIDs[next++ & 1023]);
+    }
+
+    /**
+     * Authenticates a user. The measurement includes the key derivation of the password hash.
+     *
+     * @return the authenticated user
+     * @throws UserException is thrown if the authentication failed
+     */
+    @Benchmark
+    public User authenticate() throws UserException {
+        return userManager.authenticate(userNames[next++ & 1023], BenchmarkData.PASSWORD);
+    }
+}
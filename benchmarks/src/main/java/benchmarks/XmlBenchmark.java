@@ -0,0 +1,80 @@
+package benchmarks;
+
+import model.User;
+import model.UserManager;
+import model.UserPartition;
+import model.helper.XmlHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading the complete data from a single Data.xml and writing it as partitions in a temporary directory.
+ * Writing includes the sync to the disk. The todos are distributed to users with 10 todos each.
+ * <p>
+ * write writes all partitions in parallel, as at startup, writeUser writes the partition of one user, as after a
+ * mutation.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class XmlBenchmark {
+    private static final int TODOS_PER_USER = 10;
+    private static final String SINGLE_FILE = "WEB-INF/xml/Single.xml";
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int todos;
+
+    private ServletContext servletContext;
+    private UserManager userManager;
+    private User user;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkData.quietLogging();
+        Path directory = Files.createTempDirectory("todoapp");
+        BenchmarkData.writeUsers(directory, todos, TODOS_PER_USER);
+        // the Data.xml is renamed once it is distributed to the partitions, so a copy is read
+        Files.copy(directory.resolve("WEB-INF/xml/Data.xml"), directory.resolve(SINGLE_FILE));
+        servletContext = BenchmarkData.servletContext(directory);
+        userManager = UserManager.getInstance(servletContext);
+        user = userManager.getUser(0);
+    }
+
+    @Benchmark
+    public UserPartition read() {
+        return XmlHelper.readXmlData(servletContext, SINGLE_FILE);
+    }
+
+    @Benchmark
+    public UserManager write() {
+        userManager.writeData(servletContext);
+        return userManager;
+    }
+
+    @Benchmark
+    public UserManager writeUser() {
+        userManager.writeData(servletContext, user);
+        return userManager;
+    }
+}
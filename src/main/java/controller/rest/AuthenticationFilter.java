@@ -1,8 +1,16 @@
 package controller.rest;
 
+import controller.rest.helper.AdmissionControl;
+import controller.rest.helper.CredentialCache;
+import controller.rest.helper.RateLimiter;
+import controller.rest.helper.TokenHelper;
 import model.User;
 import model.UserException;
 import model.UserManager;
+import model.helper.ConfigHelper;
+import monitoring.AuthenticationEvent;
+import monitoring.Span;
+import monitoring.Tracer;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletContext;
@@ -16,8 +24,9 @@ import java.util.Base64;
 import java.util.logging.Logger;
 
 /**
- * Basic Authentication Filter for REST API.
+ * Basic and Bearer Authentication Filter for REST API.
  * Listens to "/api/*" path.
+ * Authenticated requests are rate limited per user and mutating requests are subject to a global concurrency limit.
  *
  * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
  * @version 1.0
@@ -25,10 +34,39 @@ import java.util.logging.Logger;
 @WebFilter(urlPatterns = "/api/*")
 public class AuthenticationFilter extends HttpFilter {
     private static final Logger LOGGER = Logger.getLogger(AuthenticationFilter.class.getName());
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private CredentialCache credentialCache;
+    private RateLimiter readLimiter;
+    private RateLimiter writeLimiter;
+    private AdmissionControl writeAdmission;
 
     /**
-     * Authenticates a user with Basic Authentication.
-     * Authentication will not be applied when the users path is requested.
+     * Initializes the cache of verified credentials, the rate limiters and the admission control.
+     * They are configured with the following context parameters:
+     * "credentialCacheSize" and "credentialCacheSeconds" for the credential cache,
+     * "readsPerSecond", "readBurst", "writesPerSecond" and "writeBurst" for the rate limiters per user and
+     * "maxConcurrentWrites", "writeQueueSize" and "writeQueueTimeoutMillis" for the admission control.
+     */
+    @Override
+    public void init() {
+        ServletContext servletContext = getServletContext();
+        int maxSize = (int) ConfigHelper.getLong(servletContext, "credentialCacheSize", CredentialCache.DEFAULT_MAX_SIZE);
+        long ttlSeconds = ConfigHelper.getLong(servletContext, "credentialCacheSeconds", CredentialCache.DEFAULT_TTL_SECONDS);
+        credentialCache = new CredentialCache(maxSize, ttlSeconds);
+        readLimiter = new RateLimiter(ConfigHelper.getLong(servletContext, "readsPerSecond", 50),
+            ConfigHelper.getLong(servletContext, "readBurst", 100));
+        writeLimiter = new RateLimiter(ConfigHelper.getLong(servletContext, "writesPerSecond", 10),
+            ConfigHelper.getLong(servletContext, "writeBurst", 20));
+        writeAdmission = new AdmissionControl((int) ConfigHelper.getLong(servletContext, "maxConcurrentWrites", 4),
+            (int) ConfigHelper.getLong(servletContext, "writeQueueSize", 32),
+            ConfigHelper.getLong(servletContext, "writeQueueTimeoutMillis", 1000));
+    }
+
+    /**
+     * Authenticates a user with Basic Authentication or with a bearer token issued by the tokens path.
+     * Bearer tokens are validated by their signature without looking up the user.
+     * Recently verified Basic credentials are taken from a cache, so the password hash is not computed on every request.
+     * Authentication will not be applied when the users or the metrics path is requested.
      *
      * @param request  the request
      * @param response the response
@@ -44,35 +82,128 @@ public class AuthenticationFilter extends HttpFilter {
             if (requestPattern.length >= 3) {
                 String methodName = requestPattern[2];
                 if ("users".equalsIgnoreCase(methodName)) {
-                    chain.doFilter(request, response);
+                    doFilterAdmitted(request, response, chain);
+                } else if ("metrics".equalsIgnoreCase(methodName)) {
+                    chain.doFilter(request, response); // restricted to local clients by the servlet
                 } else {
+                    AuthenticationEvent event = new AuthenticationEvent();
+                    event.begin();
+                    int userID;
+                    Span span = Tracer.span("auth");
+                    try {
+                        userID = authenticate(request, methodName, servletContext, event);
+                    } finally {
+                        span.close();
+                    }
+                    event.end();
+                    long retryAfter = (userID < 0) ? 0
+                        : isWrite(request) ? writeLimiter.tryAcquire(userID) : readLimiter.tryAcquire(userID);
+                    if (event.shouldCommit()) {
+                        event.userID = userID;
+                        event.outcome = (userID < 0) ? "unauthorized" : (retryAfter > 0) ? "rate limited" : "authenticated";
+                        event.commit();
+                    }
                     try {
-                        String header = request.getHeader("Authorization");
-                        String[] tokens = header.split(" ");
-                        if (!tokens[0].equals("Basic")) {
-                            throw new IllegalArgumentException();
-                        }
-                        byte[] decoded = Base64.getDecoder().decode(tokens[1]);
-                        String[] credentials = new String(decoded).split(":");
-                        int userID = validate(credentials, servletContext); // throws an exception if the credentials are invalid
                         if (userID >= 0) {
                             request.setAttribute("userID", userID);
-                            chain.doFilter(request, response);
+                            if (retryAfter > 0) {
+                                rejectRequest(response, retryAfter);
+                                LOGGER.warning(() -> " - - - - Rate limit exceeded by user: " + userID + " - - - - ");
+                            } else {
+                                doFilterAdmitted(request, response, chain);
+                            }
                         } else {
                             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                         }
                     } catch (Exception e) {
                         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                        LOGGER.warning(" - - - - Unauthorized : " + request.getPathInfo() + " - - - - ");
+                        LOGGER.warning(() -> " - - - - Unauthorized : " + request.getPathInfo() + " - - - - ");
                     }
                 }
             }
         } else {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            LOGGER.warning(" - - - - Resource not found : " + pathInfo + " - - - - ");
+            LOGGER.warning(() -> " - - - - Resource not found : " + pathInfo + " - - - - ");
+        }
+    }
+
+    /**
+     * Authenticates a request with a bearer token or with Basic credentials.
+     * Bearer tokens are not accepted on the tokens path, which issues them.
+     *
+     * @param request        the request
+     * @param methodName     the requested resource
+     * @param servletContext the context of the current servlet
+     * @param event          the flight recorder event to record the scheme in
+     * @return the ID of the authenticated user, or -1 if the request could not be authenticated
+     */
+    private int authenticate(HttpServletRequest request, String methodName, ServletContext servletContext, AuthenticationEvent event) {
+        try {
+            String header = request.getHeader("Authorization");
+            String[] tokens = header.split(" ");
+            int userID;
+            if (tokens[0].equals(TokenHelper.TOKEN_TYPE) && !"tokens".equalsIgnoreCase(methodName)) {
+                event.scheme = "Bearer";
+                userID = TokenHelper.validateToken(tokens[1]);
+                if (userID < 0) {
+                    LOGGER.warning(" - - - - Unauthorized : Invalid or expired token - - - - ");
+                }
+            } else if (tokens[0].equals("Basic")) {
+                event.scheme = "Basic (cached)";
+                userID = credentialCache.get(tokens[1]);
+                if (userID < 0) {
+                    event.scheme = "Basic";
+                    byte[] decoded = Base64.getDecoder().decode(tokens[1]);
+                    String[] credentials = new String(decoded).split(":");
+                    userID = validate(credentials, servletContext);
+                    if (userID >= 0) {
+                        credentialCache.put(tokens[1], userID);
+                    }
+                }
+            } else {
+                throw new IllegalArgumentException();
+            }
+            return userID;
+        } catch (RuntimeException e) {
+            LOGGER.warning(() -> " - - - - Unauthorized : " + request.getPathInfo() + " - - - - ");
+            return -1;
         }
     }
 
+    /**
+     * Passes a request down the chain. Mutating requests are only passed if the admission control admits them.
+     *
+     * @param request  the request
+     * @param response the response
+     * @param chain    the filter chain
+     * @throws IOException      is thrown when the chain couldn't be filtered
+     * @throws ServletException is thrown when the chain couldn't be filtered
+     */
+    private void doFilterAdmitted(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (!isWrite(request)) {
+            chain.doFilter(request, response);
+        } else if (writeAdmission.tryAcquire()) {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                writeAdmission.release();
+            }
+        } else {
+            rejectRequest(response, 1);
+            LOGGER.warning(() -> " - - - - Too many concurrent writes: " + request.getServletPath() + " - - - - ");
+        }
+    }
+
+    private boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method));
+    }
+
+    private void rejectRequest(HttpServletResponse response, long retryAfterSeconds) {
+        response.setStatus(SC_TOO_MANY_REQUESTS);
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+    }
+
     private int validate(String[] credentials, ServletContext servletContext) {
         UserManager userManager = UserManager.getInstance(servletContext);
         User tempUser;
@@ -81,7 +212,7 @@ public class AuthenticationFilter extends HttpFilter {
                 tempUser = userManager.authenticate(credentials[0], credentials[1]);
                 return tempUser.getUserID();
             } catch (UserException exception) {
-                LOGGER.warning(" - - - - Unauthorized : " + exception.getMessage() + " - - - - ");
+                LOGGER.warning(() -> " - - - - Unauthorized : " + exception.getMessage() + " - - - - ");
                 return -1;
             }
         } else {
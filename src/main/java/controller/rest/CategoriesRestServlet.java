@@ -3,6 +3,8 @@ package controller.rest;
 import model.User;
 import model.UserManager;
 import controller.rest.helper.JsonHelper;
+import controller.rest.helper.RequestCoalescer;
+import monitoring.StructuredLog;
 
 import javax.servlet.ServletContext;
 import javax.servlet.annotation.WebServlet;
@@ -10,7 +12,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
@@ -25,6 +28,7 @@ import java.util.logging.Logger;
 @WebServlet("/api/categories")
 public class CategoriesRestServlet extends HttpServlet {
     private static final Logger LOGGER = Logger.getLogger(CategoriesRestServlet.class.getName());
+    private final RequestCoalescer coalescer = new RequestCoalescer();
 
     /**
      * Get all categories.
@@ -39,21 +43,26 @@ public class CategoriesRestServlet extends HttpServlet {
         String acceptType = request.getHeader("Accept");
 
         if (!acceptType.equalsIgnoreCase(JsonHelper.CONTENT_TYPE)) {
-            LOGGER.warning(" - - - - Wrong content Type from Request: " + acceptType + " - - - - ");
+            LOGGER.warning(() -> " - - - - Wrong content Type from Request: " + acceptType + " - - - - ");
             response.setStatus(HttpServletResponse.SC_NOT_ACCEPTABLE); // unsupported accept type
         } else {
             ServletContext servletContext = getServletContext();
             UserManager userManager = UserManager.getInstance(servletContext);
             User user = userManager.getUser((Integer) request.getAttribute("userID"));
-            List<String> categories = new ArrayList<>(user.getDistinctCategories());
-            String json = JsonHelper.writeCategoryJsonData(categories);
+            // concurrent identical requests of the same user and todo list version share one response
+            String key = user.getUserID() + ":" + user.getVersion();
+            byte[] json = coalescer.coalesce(key, () -> {
+                List<String> categories = new ArrayList<>(user.getDistinctCategories());
+                return String.valueOf(JsonHelper.writeCategoryJsonData(categories)).getBytes(StandardCharsets.UTF_8);
+            });
             response.setStatus(HttpServletResponse.SC_OK);
             response.setContentType(JsonHelper.CONTENT_TYPE);
             response.setCharacterEncoding(JsonHelper.ENCODING);
-            PrintWriter out = response.getWriter();
-            out.print(json);
+            response.setContentLength(json.length);
+            OutputStream out = response.getOutputStream();
+            out.write(json);
             out.flush();
-            LOGGER.info(" - - - -  Response given - - - - ");
+            StructuredLog.sampled(LOGGER, "response_given");
         }
     }
 }
@@ -0,0 +1,51 @@
+package controller.rest;
+
+import monitoring.MetricsRegistry;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.util.logging.Logger;
+
+/**
+ * Returns the application metrics in the Prometheus text exposition format.
+ * Listens to "/api/metrics" path.
+ * The metrics are only returned to clients on the local machine.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@WebServlet("/api/metrics")
+public class MetricsRestServlet extends HttpServlet {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    private static final Logger LOGGER = Logger.getLogger(MetricsRestServlet.class.getName());
+
+    /**
+     * Get all metrics.
+     *
+     * @param request  the request
+     * @param response the response
+     * @throws IOException is thrown when the response couldn't be written
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress()) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            LOGGER.warning(() -> " - - - - Metrics requested from remote address: " + request.getRemoteAddr() + " - - - - ");
+        } else {
+            StringBuilder metrics = new StringBuilder();
+            MetricsRegistry.getInstance().writeTo(metrics);
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(CONTENT_TYPE);
+            response.setCharacterEncoding("UTF-8");
+            PrintWriter out = response.getWriter();
+            out.print(metrics);
+            out.flush();
+        }
+    }
+}
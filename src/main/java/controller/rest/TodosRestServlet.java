@@ -1,23 +1,35 @@
 package controller.rest;
 
 import model.Todo;
+import model.TodoOrder;
 import model.User;
 import model.UserManager;
+import controller.rest.helper.ETagHelper;
 import controller.rest.helper.JsonHelper;
+import controller.rest.helper.RequestCoalescer;
+import monitoring.StructuredLog;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
 import javax.servlet.annotation.*;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
 /**
  * Read and manipulate todo items via REST API.
  * Listens to "/api/todos/*" path.
+ * <p>
+ * With the query parameter archived=true, the archived todos are returned instead of the todo list. They are read-only.
+ * The list is ordered by the query parameter sort (due, title, important or created), by due date if it is missing.
+ * A single todo is returned with its version as ETag. Updates and deletions honor an If-Match header and fail with
+ * 412 Precondition Failed if the todo was changed in the meantime, so concurrent editors don't overwrite each other.
  *
  * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
  * @version 1.0
@@ -25,10 +37,12 @@ import java.util.logging.Logger;
 @WebServlet("/api/todos/*")
 public class TodosRestServlet extends HttpServlet {
     private static final Logger LOGGER = Logger.getLogger(TodosRestServlet.class.getName());
+    private final RequestCoalescer coalescer = new RequestCoalescer();
 
     /**
      * Returns a single todo item if an id is present otherwise returns a list with todo items.
-     * Filters the list by categories if the category query parameter is present.
+     * Filters the list by categories if the category query parameter is present and orders it by the sort query
+     * parameter. Returns the archived todos if the archived query parameter is true.
      *
      * @param request  the request
      * @param response the response
@@ -41,9 +55,10 @@ public class TodosRestServlet extends HttpServlet {
 
         if (!acceptType.equalsIgnoreCase(JsonHelper.CONTENT_TYPE)) {
             response.setStatus(HttpServletResponse.SC_NOT_ACCEPTABLE);
-            LOGGER.warning(" - - - - Wrong content Type from Request: " + acceptType + " - - - - ");
+            LOGGER.warning(() -> " - - - - Wrong content Type from Request: " + acceptType + " - - - - ");
         } else {
             String category = request.getParameter("category");
+            boolean archived = Boolean.parseBoolean(request.getParameter("archived"));
             ServletContext servletContext = getServletContext();
             UserManager userManager = UserManager.getInstance(servletContext);
             String pathInfo = request.getPathInfo();
@@ -52,25 +67,38 @@ public class TodosRestServlet extends HttpServlet {
                 try {
                     int todoID = Integer.parseInt(pathInfo.split("/")[1]);
                     User user = userManager.getUser((Integer) request.getAttribute("userID"));
-                    Todo todo = user.getTodo(todoID);
+                    Todo todo = archived ? user.getArchivedTodo(todoID) : user.getTodo(todoID);
                     if (todo != null) {
                         String json = JsonHelper.writeTodoJsonData(todo);
+                        response.setHeader(ETagHelper.ETAG, ETagHelper.format(todo.getVersion()));
                         writeResponse(response, json, HttpServletResponse.SC_OK);
-                        LOGGER.info(" - - - -  Response given - - - - ");
+                        StructuredLog.sampled(LOGGER, "response_given");
                     } else {
                         response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                        LOGGER.warning(" - - - - Resource not found: " + request.getPathInfo() + " - - - - ");
+                        LOGGER.warning(() -> " - - - - Resource not found: " + request.getPathInfo() + " - - - - ");
                     }
                 } catch (Exception exception) {
                     response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                    LOGGER.warning(" - - - - Resource not found: " + request.getPathInfo() + " - - - - ");
+                    LOGGER.warning(() -> " - - - - Resource not found: " + request.getPathInfo() + " - - - - ");
                 }
             } else {
                 // todos without path parameter
+                TodoOrder order = TodoOrder.of(request.getParameter("sort"));
+                if (order == null) {
+                    writeResponse(response, "", HttpServletResponse.SC_BAD_REQUEST);
+                    LOGGER.warning(() -> " - - - - Invalid sort order: " + request.getParameter("sort") + " - - - - ");
+                    return;
+                }
                 User user = userManager.getUser((Integer) request.getAttribute("userID"));
-                String json = JsonHelper.writeTodoJsonData(user.getTodos(category));
+                // concurrent identical requests of the same user and todo list version share one response
+                String key = user.getUserID() + ":" + user.getVersion() + ":" + category + ":" + archived + ":" + order;
+                byte[] json = coalescer.coalesce(key, () -> {
+                    List<Todo> todos = archived ? user.getArchivedTodos(category, order)
+                        : user.getTodos(category, null, order);
+                    return String.valueOf(JsonHelper.writeTodoJsonData(todos)).getBytes(StandardCharsets.UTF_8);
+                });
                 writeResponse(response, json, HttpServletResponse.SC_OK);
-                LOGGER.info(" - - - -  Response given - - - - ");
+                StructuredLog.sampled(LOGGER, "response_given");
             }
         }
     }
@@ -90,10 +118,10 @@ public class TodosRestServlet extends HttpServlet {
 
         if (!contentType.equalsIgnoreCase(JsonHelper.CONTENT_TYPE)) {
             response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
-            LOGGER.warning(" - - - - Wrong content Type from Request: " + contentType + " - - - - ");
+            LOGGER.warning(() -> " - - - - Wrong content Type from Request: " + contentType + " - - - - ");
         } else if (!acceptType.equalsIgnoreCase(JsonHelper.CONTENT_TYPE)) {
             response.setStatus(HttpServletResponse.SC_NOT_ACCEPTABLE);
-            LOGGER.warning(" - - - - Wrong Accept Type from Request: " + acceptType + " - - - - ");
+            LOGGER.warning(() -> " - - - - Wrong Accept Type from Request: " + acceptType + " - - - - ");
         } else {
             ServletContext servletContext = getServletContext();
             UserManager userManager = UserManager.getInstance(servletContext);
@@ -102,13 +130,12 @@ public class TodosRestServlet extends HttpServlet {
                     .lines()
                     .reduce("", (String::concat));
                 Map<String, ?> map = JsonHelper.readJsonData(body);
-                if ((map != null && !map.isEmpty())
-                    && (map.containsKey("title") && !map.get("title").toString().isEmpty())) {
-                    String title = (String) map.get("title");
-                    addNewTodo(request, response, servletContext, userManager, map, title);
+                Todo todo = (map != null) ? JsonHelper.readTodo(map, true) : null;
+                if (todo != null) {
+                    addNewTodo(request, response, servletContext, userManager, todo);
                 } else {
                     response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                    LOGGER.warning(" - - - - Bad request: " + request.getPathInfo() + " - - - - ");
+                    LOGGER.warning(() -> " - - - - Bad request: " + request.getPathInfo() + " - - - - ");
                 }
             } catch (Exception exception) {
                 System.out.println("Exception: " + exception.getMessage());
@@ -120,7 +147,8 @@ public class TodosRestServlet extends HttpServlet {
 
     /**
      * Updates a todo.
-     * If there's an id in the request body, it must match the id from the path.
+     * If there's an id in the request body, it must match the id from the path. If there's an If-Match header, it
+     * must match the ETag of the current version of the todo.
      *
      * @param request  the request
      * @param response the response
@@ -132,7 +160,7 @@ public class TodosRestServlet extends HttpServlet {
         request.setCharacterEncoding("UTF-8");
         if (!contentType.equalsIgnoreCase(JsonHelper.CONTENT_TYPE)) {
             response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
-            LOGGER.warning(" - - - - Wrong Content Type from Request: " + contentType + " - - - - ");
+            LOGGER.warning(() -> " - - - - Wrong Content Type from Request: " + contentType + " - - - - ");
         } else {
             ServletContext servletContext = getServletContext();
             UserManager userManager = UserManager.getInstance(servletContext);
@@ -152,7 +180,8 @@ public class TodosRestServlet extends HttpServlet {
                             // if there's an id in the body, it must match the id from the path
                             if (todoIDBody == null || todoIDPath == todoIDBody) {
                                 if (map.get("title") != null && !((String) map.get("title")).isEmpty()) {
-                                    updateTodo(response, servletContext, userManager, user, todo, map);
+                                    updateTodo(response, servletContext, userManager, user, todo, map,
+                                        request.getHeader(ETagHelper.IF_MATCH));
                                 } else {
                                     writeResponse(response, "", HttpServletResponse.SC_BAD_REQUEST);
                                     LOGGER.warning(" - - - - Invalid Todo data: no title set - - - - ");
@@ -185,6 +214,8 @@ public class TodosRestServlet extends HttpServlet {
 
     /**
      * Remove a todo.
+     * If there's an If-Match header, it must match the ETag of the current version of the todo. A todo which was
+     * deleted concurrently is not found.
      *
      * @param request  the request
      * @param response the response
@@ -203,21 +234,32 @@ public class TodosRestServlet extends HttpServlet {
                 User user = userManager.getUser((Integer) request.getAttribute("userID"));
                 Todo todo = user.getTodo(todoID);
                 if (todo != null) {
-                    user.deleteTodo(todo);
-                    userManager.writeData(servletContext);
-                    writeResponse(response, "", HttpServletResponse.SC_NO_CONTENT);
-                    LOGGER.info(" - - - - Todo removed id: " + todo.getTodoID() + "  - - - - ");
+                    String ifMatch = request.getHeader(ETagHelper.IF_MATCH);
+                    boolean deleted = (ifMatch == null) ? user.deleteTodo(todo, User.ANY_VERSION)
+                        : ETagHelper.matches(ifMatch, todo.getVersion()) && user.deleteTodo(todo, todo.getVersion());
+                    if (deleted) {
+                        userManager.writeData(servletContext, user);
+                        writeResponse(response, "", HttpServletResponse.SC_NO_CONTENT);
+                        StructuredLog.info(LOGGER, "todo_removed", "todoID", todo.getTodoID());
+                    } else if (user.getTodo(todoID) == null) {
+                        // deleted concurrently, only a changed version fails the precondition
+                        writeResponse(response, "", HttpServletResponse.SC_NOT_FOUND);
+                        LOGGER.warning(() -> " - - - - Todo not found: " + pathInfo + "  - - - - ");
+                    } else {
+                        writeResponse(response, "", HttpServletResponse.SC_PRECONDITION_FAILED);
+                        LOGGER.warning(() -> " - - - - Todo was changed: " + pathInfo + "  - - - - ");
+                    }
                 } else {
                     writeResponse(response, "", HttpServletResponse.SC_NOT_FOUND);
-                    LOGGER.warning(" - - - - Todo not found: " + pathInfo + "  - - - - ");
+                    LOGGER.warning(() -> " - - - - Todo not found: " + pathInfo + "  - - - - ");
                 }
             } catch (Exception e) {
                 writeResponse(response, "", HttpServletResponse.SC_NOT_FOUND);
-                LOGGER.warning(" - - - - Todo not found: " + pathInfo + "  - - - - ");
+                LOGGER.warning(() -> " - - - - Todo not found: " + pathInfo + "  - - - - ");
             }
         } else {
             writeResponse(response, "", HttpServletResponse.SC_NOT_FOUND);
-            LOGGER.warning(" - - - - Todo not found: " + pathInfo + "  - - - - ");
+            LOGGER.warning(() -> " - - - - Todo not found: " + pathInfo + "  - - - - ");
         }
     }
 
@@ -238,7 +280,55 @@ public class TodosRestServlet extends HttpServlet {
         out.flush();
     }
 
-    private void updateTodo(HttpServletResponse response, ServletContext servletContext, UserManager userManager, User user, Todo todo, Map<String, ?> map) throws IOException {
+    /**
+     * Writes an already encoded json response
+     *
+     * @param response     - the servlets HttpServletResponse object
+     * @param responseBody - the UTF-8 encoded json to be written in the response
+     * @param status       - Status code to be sent
+     * @throws IOException is thrown when the response couldn't be written
+     */
+    private void writeResponse(HttpServletResponse response, byte[] responseBody, Integer status) throws IOException {
+        response.setStatus(status);
+        response.setContentType(JsonHelper.CONTENT_TYPE);
+        response.setCharacterEncoding(JsonHelper.ENCODING);
+        response.setContentLength(responseBody.length);
+        OutputStream out = response.getOutputStream();
+        out.write(responseBody);
+        out.flush();
+    }
+
+    /**
+     * Applies the changes to the todo. Without an If-Match header, the changes are applied again to the newer version
+     * if the todo was changed concurrently, so no change is lost.
+     */
+    private void updateTodo(HttpServletResponse response, ServletContext servletContext, UserManager userManager, User user, Todo existing, Map<String, ?> map, String ifMatch) throws IOException {
+        Todo todo;
+        while (true) {
+            if (ifMatch != null && !ETagHelper.matches(ifMatch, existing.getVersion())) {
+                writeResponse(response, "", HttpServletResponse.SC_PRECONDITION_FAILED);
+                LOGGER.warning(" - - - - Invalid Todo data: Todo was changed - - - - ");
+                return;
+            }
+            todo = applyChanges(existing, map);
+            if (user.updateTodo(todo, existing.getVersion())) {
+                break;
+            }
+            existing = user.getTodo(existing.getTodoID());
+            if (existing == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                LOGGER.warning(" - - - - Invalid Todo data: Todo not found - - - - ");
+                return;
+            }
+        }
+        userManager.writeData(servletContext, user);
+        response.setHeader(ETagHelper.ETAG, ETagHelper.format(existing.getVersion() + 1));
+        writeResponse(response, "todoId", HttpServletResponse.SC_NO_CONTENT);
+        StructuredLog.info(LOGGER, "todo_updated", "todoID", todo.getTodoID());
+    }
+
+    private Todo applyChanges(Todo existing, Map<String, ?> map) {
+        Todo todo = new Todo(existing);
         String title = (String) map.get("title");
         String category = (String) map.get("category");
         String dueDate = (String) map.get("dueDate");
@@ -257,28 +347,18 @@ public class TodosRestServlet extends HttpServlet {
         }
         if (map.get("completed") != null) {
             boolean isCompleted = (boolean) map.get("completed");
-            todo.setCompleted(isCompleted);
+            todo.markCompleted(isCompleted);
         }
-        user.updateTodo(todo);
-        userManager.writeData(servletContext);
-        writeResponse(response, "todoId", HttpServletResponse.SC_NO_CONTENT);
-        LOGGER.info(" - - - - todo updated: " + todo.getTodoID() + " - - - - ");
+        return todo;
     }
 
-    private void addNewTodo(HttpServletRequest request, HttpServletResponse response, ServletContext servletContext, UserManager userManager, Map<String, ?> map, String title) throws IOException {
-        String category = (map.get("category") != null) ? (String) map.get("category") : "";
-        String dueDate = (String) map.get("dueDate");
-        boolean isImportant = map.get("important") != null && (boolean) map.get("important");
-        boolean isCompleted = map.get("completed") != null && (boolean) map.get("completed");
-        LocalDate date = (dueDate != null && !dueDate.isEmpty()) ? LocalDate.parse(dueDate) : null;
-
+    private void addNewTodo(HttpServletRequest request, HttpServletResponse response, ServletContext servletContext, UserManager userManager, Todo todo) throws IOException {
         User user = userManager.getUser((Integer) request.getAttribute("userID"));
-        Todo todo = new Todo(title, category, date, isImportant, isCompleted);
-        String todoId = todo.getTodoID().toString();
+        String todoId = String.valueOf(todo.getTodoID());
         user.addTodo(todo);
 
-        userManager.writeData(servletContext);
+        userManager.writeData(servletContext, user);
         writeResponse(response, todoId, HttpServletResponse.SC_CREATED);
-        LOGGER.info(" - - - - Todo with ID: " + todoId + " created  - - - - ");
+        StructuredLog.info(LOGGER, "todo_created", "todoID", todoId);
     }
 }
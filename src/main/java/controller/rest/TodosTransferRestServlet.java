@@ -0,0 +1,163 @@
+package controller.rest;
+
+import model.Todo;
+import model.User;
+import model.UserManager;
+import controller.rest.helper.JsonHelper;
+import monitoring.StructuredLog;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import javax.servlet.annotation.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Exports and imports the todos of a user as newline-delimited JSON (one todo per line).
+ * Listens to "/api/todos/export" and "/api/todos/import" paths.
+ * <p>
+ * The export is written directly from the current snapshot of the todo list to the response. With the query
+ * parameter archived=true, the archived todos are exported instead. The import reads the request line by line and
+ * adds the todos in batches of BATCH_SIZE todos, each persisted once. Every imported todo gets a new id. After each
+ * batch, a progress line is written and flushed, so the client can follow a long import; lines which couldn't be
+ * imported are reported by their line number, and a last line with done=true completes the response.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@WebServlet({"/api/todos/export", "/api/todos/import"})
+public class TodosTransferRestServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(TodosTransferRestServlet.class.getName());
+    private static final String EXPORT_PATH = "/api/todos/export";
+    private static final int BATCH_SIZE = 500;
+    // further failed lines are only counted, so an unsuitable file doesn't produce a response as large as itself
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    /**
+     * Exports the todos of the user.
+     *
+     * @param request  the request
+     * @param response the response
+     * @throws IOException is thrown when the response couldn't be written
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String acceptType = request.getHeader("Accept");
+        if (!EXPORT_PATH.equals(request.getServletPath())) {
+            response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            LOGGER.warning(() -> " - - - - Method not allowed: GET " + request.getServletPath() + " - - - - ");
+        } else if (!accepts(acceptType)) {
+            response.setStatus(HttpServletResponse.SC_NOT_ACCEPTABLE);
+            LOGGER.warning(() -> " - - - - Wrong Accept Type from Request: " + acceptType + " - - - - ");
+        } else {
+            boolean archived = Boolean.parseBoolean(request.getParameter("archived"));
+            UserManager userManager = UserManager.getInstance(getServletContext());
+            User user = userManager.getUser((Integer) request.getAttribute("userID"));
+            List<Todo> todos = archived ? user.getArchivedTodos() : user.getTodos();
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(JsonHelper.NDJSON_CONTENT_TYPE);
+            response.setCharacterEncoding(JsonHelper.ENCODING);
+            OutputStream out = response.getOutputStream();
+            JsonHelper.writeTodoNdjson(todos, out);
+            out.flush();
+            StructuredLog.info(LOGGER, "todos_exported", "count", todos.size());
+        }
+    }
+
+    /**
+     * Imports todos into the todo list of the user.
+     *
+     * @param request  the request
+     * @param response the response
+     * @throws IOException is thrown when the request couldn't be read or the response couldn't be written
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String contentType = request.getContentType();
+        request.setCharacterEncoding("UTF-8");
+        String acceptType = request.getHeader("Accept");
+
+        if (EXPORT_PATH.equals(request.getServletPath())) {
+            response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            LOGGER.warning(() -> " - - - - Method not allowed: POST " + request.getServletPath() + " - - - - ");
+        } else if (contentType == null || !contentType.equalsIgnoreCase(JsonHelper.NDJSON_CONTENT_TYPE)) {
+            response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            LOGGER.warning(() -> " - - - - Wrong content Type from Request: " + contentType + " - - - - ");
+        } else if (!accepts(acceptType)) {
+            response.setStatus(HttpServletResponse.SC_NOT_ACCEPTABLE);
+            LOGGER.warning(() -> " - - - - Wrong Accept Type from Request: " + acceptType + " - - - - ");
+        } else {
+            ServletContext servletContext = getServletContext();
+            UserManager userManager = UserManager.getInstance(servletContext);
+            User user = userManager.getUser((Integer) request.getAttribute("userID"));
+            importTodos(request.getReader(), response, servletContext, userManager, user);
+        }
+    }
+
+    private void importTodos(BufferedReader reader, HttpServletResponse response, ServletContext servletContext, UserManager userManager, User user) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(JsonHelper.NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding(JsonHelper.ENCODING);
+        PrintWriter out = response.getWriter();
+        List<Todo> batch = new ArrayList<>(BATCH_SIZE);
+        int lineNumber = 0;
+        int imported = 0;
+        int failed = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            Todo todo = null;
+            String error;
+            try {
+                Map<String, ?> map = JsonHelper.readJsonLine(line);
+                todo = (map != null) ? JsonHelper.readTodo(map, false) : null;
+                error = (map != null) ? "no title set" : "not a JSON object";
+            } catch (RuntimeException ex) {
+                error = "invalid todo data";
+            }
+            if (todo != null) {
+                batch.add(todo);
+                if (batch.size() == BATCH_SIZE) {
+                    imported += applyBatch(batch, servletContext, userManager, user);
+                    out.print(JsonHelper.writeImportProgress(lineNumber, imported, failed, false));
+                    out.flush();
+                }
+            } else if (++failed <= MAX_REPORTED_ERRORS) {
+                out.print(JsonHelper.writeImportError(lineNumber, error));
+            }
+        }
+        imported += applyBatch(batch, servletContext, userManager, user);
+        out.print(JsonHelper.writeImportProgress(lineNumber, imported, failed, true));
+        out.flush();
+        StructuredLog.info(LOGGER, "todos_imported", "count", imported);
+    }
+
+    /**
+     * Adds a batch of todos to the todo list of the user and persists it.
+     *
+     * @return the number of added todos
+     */
+    private int applyBatch(List<Todo> batch, ServletContext servletContext, UserManager userManager, User user) {
+        int size = batch.size();
+        if (size > 0) {
+            user.addTodos(batch);
+            userManager.writeData(servletContext, user);
+            batch.clear();
+        }
+        return size;
+    }
+
+    private static boolean accepts(String acceptType) {
+        return acceptType == null || acceptType.equals("*/*")
+            || acceptType.equalsIgnoreCase(JsonHelper.NDJSON_CONTENT_TYPE);
+    }
+}
@@ -0,0 +1,60 @@
+package controller.rest;
+
+import controller.rest.helper.JsonHelper;
+import controller.rest.helper.TokenHelper;
+import model.helper.ConfigHelper;
+import monitoring.StructuredLog;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.logging.Logger;
+
+/**
+ * Issues bearer tokens via REST API.
+ * Listens to "/api/tokens" path.
+ * The request must be authenticated with Basic Authentication, the returned token can then be used
+ * for all further requests.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@WebServlet("/api/tokens")
+public class TokensRestServlet extends HttpServlet {
+    private static final Logger LOGGER = Logger.getLogger(TokensRestServlet.class.getName());
+
+    /**
+     * Issues a token for the authenticated user.
+     * The validity can be configured with the context parameter "tokenValiditySeconds".
+     *
+     * @param request  the request
+     * @param response the response
+     * @throws IOException is thrown when the response couldn't be written
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        request.setCharacterEncoding("UTF-8");
+        String acceptType = request.getHeader("Accept");
+
+        if (acceptType == null || !acceptType.equalsIgnoreCase(JsonHelper.CONTENT_TYPE)) {
+            response.setStatus(HttpServletResponse.SC_NOT_ACCEPTABLE);
+            LOGGER.warning(() -> " - - - - Wrong Accept Type from Request: " + acceptType + " - - - - ");
+        } else {
+            int userID = (Integer) request.getAttribute("userID");
+            long validity = ConfigHelper.getLong(getServletContext(), "tokenValiditySeconds",
+                TokenHelper.DEFAULT_VALIDITY_SECONDS);
+            String token = TokenHelper.createToken(userID, System.currentTimeMillis() + validity * 1000);
+            String json = JsonHelper.writeTokenJsonData(token, validity);
+            response.setStatus(HttpServletResponse.SC_CREATED);
+            response.setContentType(JsonHelper.CONTENT_TYPE);
+            response.setCharacterEncoding(JsonHelper.ENCODING);
+            PrintWriter out = response.getWriter();
+            out.print(json);
+            out.flush();
+            StructuredLog.info(LOGGER, "token_issued", "userID", userID);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package controller.rest;
 
+import model.User;
 import model.UserException;
 import model.UserManager;
 import controller.rest.helper.JsonHelper;
+import monitoring.StructuredLog;
 
 import javax.servlet.ServletContext;
 import javax.servlet.annotation.WebServlet;
@@ -37,7 +39,7 @@ public class UsersRestServlet extends HttpServlet {
         String contentType = request.getContentType();
         if (!contentType.equalsIgnoreCase(JsonHelper.CONTENT_TYPE)) {
             response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE); // unsupported content type
-            LOGGER.warning(" - - - - Wrong content Type from Request: " + contentType + " - - - - ");
+            LOGGER.warning(() -> " - - - - Wrong content Type from Request: " + contentType + " - - - - ");
 
         } else {
             try {
@@ -52,13 +54,13 @@ public class UsersRestServlet extends HttpServlet {
                     UserManager userManager = UserManager.getInstance(servletContext);
                     try {
                         if (name != null && !name.isEmpty() && password != null && !password.isEmpty()) {
-                            userManager.register(name, password);
-                            userManager.writeData(servletContext);
+                            User user = userManager.register(name, password);
+                            userManager.writeData(servletContext, user);
                             response.setStatus(HttpServletResponse.SC_CREATED); // user registered
-                            LOGGER.info(" - - - -  Response given - - - - ");
+                            StructuredLog.sampled(LOGGER, "response_given");
                         } else {
                             response.setStatus(HttpServletResponse.SC_BAD_REQUEST); // invalid user data
-                            LOGGER.warning(" - - - - Resource not found: " + request.getPathInfo() + " - - - - ");
+                            LOGGER.warning(() -> " - - - - Resource not found: " + request.getPathInfo() + " - - - - ");
                         }
                     } catch (UserException e) {
                         response.setStatus(HttpServletResponse.SC_CONFLICT); // a user with the same name already exists
@@ -0,0 +1,63 @@
+package controller.rest.helper;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrently executed requests.
+ * Requests exceeding the limit wait in a bounded queue for a limited time; if the queue is full or the time has
+ * elapsed, the request is rejected.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class AdmissionControl {
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final int queueSize;
+    private final long timeoutMillis;
+
+    /**
+     * Constructs an admission control.
+     *
+     * @param maxConcurrent the maximum number of concurrently executed requests
+     * @param queueSize     the maximum number of waiting requests
+     * @param timeoutMillis the maximum time a request waits in the queue
+     */
+    public AdmissionControl(int maxConcurrent, int queueSize, long timeoutMillis) {
+        this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+        this.queueSize = queueSize;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Admits a request. Every admitted request must call {@link #release()} when it has finished.
+     *
+     * @return true if the request was admitted, false if it was rejected
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (waiting.incrementAndGet() > queueSize) {
+            waiting.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Releases the permit of an admitted request.
+     */
+    public void release() {
+        permits.release();
+    }
+}
@@ -0,0 +1,105 @@
+package controller.rest.helper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded cache of recently verified credentials.
+ * Verifying a password against its PBKDF2 hash is deliberately slow, so the user ID of successfully verified
+ * credentials is kept for a short time. Only a SHA-256 digest of the credentials is stored, never the credentials
+ * themselves.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class CredentialCache {
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL_SECONDS = 60;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlMillis;
+
+    /**
+     * Constructs a credential cache.
+     *
+     * @param maxSize    the maximum number of cached credentials
+     * @param ttlSeconds the number of seconds verified credentials are cached
+     */
+    public CredentialCache(int maxSize, long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Returns the user ID of recently verified credentials.
+     *
+     * @param credentials the credentials as sent in the Authorization header
+     * @return the user ID, or -1 if the credentials were not verified recently
+     */
+    public int get(String credentials) {
+        String digest = digest(credentials);
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            return -1;
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(digest, entry);
+            return -1;
+        }
+        return entry.userID;
+    }
+
+    /**
+     * Caches successfully verified credentials.
+     *
+     * @param credentials the credentials as sent in the Authorization header
+     * @param userID      the ID of the authenticated user
+     */
+    public void put(String credentials, int userID) {
+        if (maxSize <= 0) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evict();
+        }
+        entries.put(digest(credentials), new Entry(userID, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Removes all expired entries. If the cache is still full afterwards, arbitrary entries are removed.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt < now);
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() >= maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static String digest(String credentials) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(credentials.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static class Entry {
+        private final int userID;
+        private final long expiresAt;
+
+        private Entry(int userID, long expiresAt) {
+            this.userID = userID;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
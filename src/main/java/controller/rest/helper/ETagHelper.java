@@ -0,0 +1,43 @@
+package controller.rest.helper;
+
+/**
+ * Helper methods for entity tags of todos.
+ * The entity tag of a todo is its version as a strong tag, e.g. "3". It changes whenever the todo is updated, so a
+ * client can send it in an If-Match header to update or delete the todo only if nobody else changed it in between.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class ETagHelper {
+    public static final String ETAG = "ETag";
+    public static final String IF_MATCH = "If-Match";
+
+    /**
+     * Formats a version as an entity tag.
+     *
+     * @param version the version of the todo
+     * @return the entity tag
+     */
+    public static String format(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Indicates whether an If-Match header matches the version of a todo. The header may contain "*" or a comma
+     * separated list of entity tags. Weak tags never match, as If-Match requires the strong comparison.
+     *
+     * @param ifMatch the value of the If-Match header
+     * @param version the current version of the todo
+     * @return true if the header matches, false otherwise
+     */
+    public static boolean matches(String ifMatch, long version) {
+        String etag = format(version);
+        for (String tag : ifMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
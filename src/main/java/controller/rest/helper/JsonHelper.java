@@ -1,11 +1,20 @@
 package controller.rest.helper;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import model.Todo;
+import monitoring.MetricsRegistry;
+import monitoring.Span;
+import monitoring.StructuredLog;
+import monitoring.Tracer;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -18,9 +27,14 @@ import java.util.logging.Logger;
  */
 public class JsonHelper {
     public static final String CONTENT_TYPE = "application/json";
+    public static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
     public static final String ENCODING = "UTF-8";
 
     private static final Logger LOGGER = Logger.getLogger(JsonHelper.class.getName());
+    private static final MetricsRegistry METRICS = MetricsRegistry.getInstance();
+    // shared by all lines of a bulk import, as creating a mapper per line would dominate the parsing
+    private static final ObjectMapper LINE_MAPPER = new ObjectMapper();
+    private static final ObjectReader LINE_READER = LINE_MAPPER.readerFor(Map.class);
 
     /**
      * Reads JSON data
@@ -30,15 +44,131 @@ public class JsonHelper {
      */
     public static Map<String, ?> readJsonData(String requestBody) {
         ObjectMapper mapper = new ObjectMapper();
-        LOGGER.info(" - - - - Read JSON data - - - - ");
+        StructuredLog.sampled(LOGGER, "json_read");
+        Span span = Tracer.span("parse");
         try {
             //noinspection unchecked
             return mapper.readValue(requestBody, Map.class);
         } catch (JsonProcessingException e) {
             return null;
+        } finally {
+            span.close();
         }
     }
 
+    /**
+     * Reads a line of newline-delimited JSON.
+     *
+     * @param line the line
+     * @return a Map object, or null if the line is not a JSON object
+     */
+    public static Map<String, ?> readJsonLine(String line) {
+        try {
+            return LINE_READER.readValue(line);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a new todo from its JSON data, as sent to add a todo or as exported.
+     *
+     * @param map          the JSON data of the todo
+     * @param completedNow true if a completed todo without a day of completion is completed today, as when a todo is
+     *                     added; false if it is read from exported data, where the day is unknown
+     * @return a new todo, or null if the data contains no title
+     * @throws RuntimeException is thrown if a value has the wrong type or format
+     */
+    public static Todo readTodo(Map<String, ?> map, boolean completedNow) {
+        String title = (String) map.get("title");
+        if (title == null || title.isEmpty()) {
+            return null;
+        }
+        String category = (map.get("category") != null) ? (String) map.get("category") : "";
+        String dueDate = (String) map.get("dueDate");
+        boolean isImportant = map.get("important") != null && (boolean) map.get("important");
+        boolean isCompleted = map.get("completed") != null && (boolean) map.get("completed");
+        LocalDate date = (dueDate != null && !dueDate.isEmpty()) ? LocalDate.parse(dueDate) : null;
+        Todo todo = new Todo(title, category, date, isImportant);
+        String completedOn = (String) map.get("completedOn");
+        if (isCompleted && completedOn != null && !completedOn.isEmpty()) {
+            todo.setCompleted(true);
+            todo.setCompletedOn(LocalDate.parse(completedOn));
+        } else if (completedNow) {
+            todo.markCompleted(isCompleted);
+        } else {
+            todo.setCompleted(isCompleted);
+        }
+        return todo;
+    }
+
+    /**
+     * Writes a list of todo items as newline-delimited JSON, one compact object per line. The todos are written
+     * directly to the stream, so the response is never held in memory as a whole.
+     *
+     * @param todoList a list of todo items
+     * @param out      the stream to write to, which is not closed
+     * @throws IOException is thrown if the stream couldn't be written
+     */
+    public static void writeTodoNdjson(List<Todo> todoList, OutputStream out) throws IOException {
+        StructuredLog.sampled(LOGGER, "json_write", "type", "ndjson");
+        long start = System.nanoTime();
+        Span span = Tracer.span("serialize");
+        try (JsonGenerator generator = LINE_MAPPER.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            for (Todo todo : todoList) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", todo.getTodoID());
+                generator.writeStringField("title", todo.getTitle());
+                generator.writeStringField("category", todo.getCategory());
+                generator.writeStringField("dueDate", (todo.getDueDate() != null) ? todo.getDueDate().toString() : "");
+                generator.writeBooleanField("important", todo.isImportant());
+                generator.writeBooleanField("completed", todo.isCompleted());
+                generator.writeStringField("completedOn", (todo.getCompletedOn() != null) ? todo.getCompletedOn().toString() : "");
+                generator.writeNumberField("version", todo.getVersion());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        } finally {
+            span.close();
+        }
+        METRICS.timer("todoapp_json_encode_duration_seconds", "Time to encode a JSON response.", "type", "ndjson")
+            .record(System.nanoTime() - start);
+    }
+
+    /**
+     * Formats the progress of a bulk import as a line of newline-delimited JSON.
+     *
+     * @param line     the number of lines read so far
+     * @param imported the number of todos imported so far
+     * @param failed   the number of lines which couldn't be imported so far
+     * @param done     true if the import has completed
+     * @return the line including its line break
+     */
+    public static String writeImportProgress(int line, int imported, int failed, boolean done) {
+        ObjectNode objectNode = LINE_MAPPER.createObjectNode();
+        objectNode.put("line", line);
+        objectNode.put("imported", imported);
+        objectNode.put("failed", failed);
+        objectNode.put("done", done);
+        return objectNode.toString() + "\n";
+    }
+
+    /**
+     * Formats a line which couldn't be imported as a line of newline-delimited JSON.
+     *
+     * @param line  the number of the line
+     * @param error the reason
+     * @return the line including its line break
+     */
+    public static String writeImportError(int line, String error) {
+        ObjectNode objectNode = LINE_MAPPER.createObjectNode();
+        objectNode.put("line", line);
+        objectNode.put("error", error);
+        return objectNode.toString() + "\n";
+    }
+
     /**
      * Receives a list of todo items, formats the list to JSON format and returns a string.
      *
@@ -47,7 +177,9 @@ public class JsonHelper {
      */
     public static String writeTodoJsonData(List<Todo> todoList) {
         ObjectMapper mapper = new ObjectMapper();
-        LOGGER.info(" - - - - Write Todo JSON data - - - - ");
+        StructuredLog.sampled(LOGGER, "json_write", "type", "todos");
+        long start = System.nanoTime();
+        Span span = Tracer.span("serialize");
         try {
             ArrayNode node = mapper.createArrayNode();
             for (Todo todo : todoList) {
@@ -55,10 +187,12 @@ public class JsonHelper {
                 addObjectNodes(todo, objectNode);
                 node.add(objectNode);
             }
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(node);
+            return recordEncoding("todos", start, mapper.writerWithDefaultPrettyPrinter().writeValueAsString(node));
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return null;
+        } finally {
+            span.close();
         }
     }
 
@@ -70,12 +204,16 @@ public class JsonHelper {
      */
     public static String writeCategoryJsonData(List<String> categoryList) {
         ObjectMapper mapper = new ObjectMapper();
-        LOGGER.info(" - - - - Write Category JSON data - - - - ");
+        StructuredLog.sampled(LOGGER, "json_write", "type", "categories");
+        long start = System.nanoTime();
+        Span span = Tracer.span("serialize");
         try {
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(categoryList);
+            return recordEncoding("categories", start, mapper.writerWithDefaultPrettyPrinter().writeValueAsString(categoryList));
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return null;
+        } finally {
+            span.close();
         }
     }
 
@@ -87,17 +225,63 @@ public class JsonHelper {
      */
     public static String writeTodoJsonData(Todo todo) {
         ObjectMapper mapper = new ObjectMapper();
-        LOGGER.info(" - - - - Write Todo JSON data - - - - ");
+        StructuredLog.sampled(LOGGER, "json_write", "type", "todo");
+        long start = System.nanoTime();
+        Span span = Tracer.span("serialize");
         try {
             ObjectNode objectNode = mapper.createObjectNode();
             addObjectNodes(todo, objectNode);
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(objectNode);
+            return recordEncoding("todo", start, mapper.writerWithDefaultPrettyPrinter().writeValueAsString(objectNode));
+        } catch (JsonProcessingException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Receives a bearer token, formats it to JSON format and returns a string.
+     *
+     * @param token            the bearer token
+     * @param expiresInSeconds the number of seconds the token is valid
+     * @return a JSON-formatted string with the token
+     */
+    public static String writeTokenJsonData(String token, long expiresInSeconds) {
+        ObjectMapper mapper = new ObjectMapper();
+        StructuredLog.sampled(LOGGER, "json_write", "type", "token");
+        long start = System.nanoTime();
+        Span span = Tracer.span("serialize");
+        try {
+            ObjectNode objectNode = mapper.createObjectNode();
+            objectNode.put("token", token);
+            objectNode.put("tokenType", TokenHelper.TOKEN_TYPE);
+            objectNode.put("expiresIn", expiresInSeconds);
+            return recordEncoding("token", start, mapper.writerWithDefaultPrettyPrinter().writeValueAsString(objectNode));
         } catch (JsonProcessingException e) {
             e.printStackTrace();
             return null;
+        } finally {
+            span.close();
         }
     }
 
+    /**
+     * Records the encoding time and the payload size of a JSON response.
+     *
+     * @param type  the type of the encoded data
+     * @param start the start time of the encoding in nanoseconds
+     * @param json  the encoded data
+     * @return the encoded data
+     */
+    private static String recordEncoding(String type, long start, String json) {
+        METRICS.timer("todoapp_json_encode_duration_seconds", "Time to encode a JSON response.", "type", type)
+            .record(System.nanoTime() - start);
+        METRICS.histogram("todoapp_json_payload_chars", "Size of an encoded JSON response in characters.", "type", type)
+            .record(json.length());
+        return json;
+    }
+
     private static void addObjectNodes(Todo todo, ObjectNode objectNode) {
         objectNode.put("id", todo.getTodoID());
         objectNode.put("title", todo.getTitle());
@@ -109,5 +293,7 @@ public class JsonHelper {
         objectNode.put("dueDate", date);
         objectNode.put("important", todo.isImportant());
         objectNode.put("completed", todo.isCompleted());
+        objectNode.put("completedOn", (todo.getCompletedOn() != null) ? todo.getCompletedOn().toString() : "");
+        objectNode.put("version", todo.getVersion());
     }
 }
@@ -0,0 +1,91 @@
+package controller.rest.helper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket rate limiter with one bucket per user.
+ * Each bucket holds up to "burst" tokens and is refilled with "ratePerSecond" tokens per second. A request consumes
+ * one token; if the bucket is empty, the request is rejected. Buckets of different users never contend.
+ * The limiter is applied to authenticated users only, so the number of buckets is bounded by the registered users.
+ * A bucket which has not been used long enough to be refilled completely is the same as a new one, so such idle
+ * buckets are removed once per PRUNE_INTERVAL and the map only holds the buckets of the recently active users.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class RateLimiter {
+    private static final long PRUNE_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private final ConcurrentHashMap<Integer, Bucket> buckets = new ConcurrentHashMap<>();
+    private final double ratePerNano;
+    private final double burst;
+    // a bucket unused for this time is full again
+    private final long refillNanos;
+    private final AtomicLong nextPrune = new AtomicLong(System.nanoTime() + PRUNE_INTERVAL);
+
+    /**
+     * Constructs a rate limiter.
+     *
+     * @param ratePerSecond the number of requests per second a user may make, 0 or less disables the limiter
+     * @param burst         the number of requests a user may make at once
+     */
+    public RateLimiter(double ratePerSecond, double burst) {
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.refillNanos = (ratePerNano > 0) ? (long) Math.ceil(this.burst / ratePerNano) : 0;
+    }
+
+    /**
+     * Tries to consume a token from the bucket of a user.
+     *
+     * @param userID the ID of the user
+     * @return 0 if the request is allowed, otherwise the number of seconds until a token is available
+     */
+    public long tryAcquire(int userID) {
+        if (ratePerNano <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long prune = nextPrune.get();
+        if (now - prune >= 0 && nextPrune.compareAndSet(prune, now + PRUNE_INTERVAL)) {
+            prune(now);
+        }
+        Bucket bucket = buckets.computeIfAbsent(userID, id -> new Bucket(burst));
+        return bucket.tryAcquire(ratePerNano, burst);
+    }
+
+    /**
+     * Removes the buckets which are full again. A request which took a bucket just before it was removed consumes
+     * its token from the removed bucket, so a user gets at most one request more than his burst.
+     */
+    private void prune(long now) {
+        buckets.values().removeIf(bucket -> bucket.isIdle(now, refillNanos));
+    }
+
+    private static class Bucket {
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        private Bucket(double tokens) {
+            this.tokens = tokens;
+        }
+
+        private synchronized long tryAcquire(double ratePerNano, double burst) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            double nanosUntilToken = (1 - tokens) / ratePerNano;
+            return Math.max(1, (long) Math.ceil(nanosUntilToken / TimeUnit.SECONDS.toNanos(1)));
+        }
+
+        private synchronized boolean isIdle(long now, long refillNanos) {
+            return now - lastRefill >= refillNanos;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package controller.rest.helper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical read requests.
+ * The first request for a key computes the response, all requests arriving for the same key while the computation
+ * is in flight wait for it and share its result. Keys should contain the user and the version of the data read, so
+ * that a request never receives a response computed from an older version than the one it has seen.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class RequestCoalescer {
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the result of the computation for the specified key.
+     * If a computation for the same key is already running, its result is returned instead of computing it again.
+     *
+     * @param key         the key identifying the request
+     * @param computation the computation producing the encoded response
+     * @return the encoded response
+     */
+    public byte[] coalesce(String key, Supplier<byte[]> computation) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+        try {
+            byte[] result = computation.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package controller.rest.helper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Helper methods for issuing and validating signed bearer tokens.
+ * A token consists of the user ID and an expiry time, signed with an HMAC. It can therefore be validated without
+ * looking up the user. The signing key is generated at startup, so tokens become invalid when the application is
+ * restarted.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class TokenHelper {
+    public static final String TOKEN_TYPE = "Bearer";
+    public static final long DEFAULT_VALIDITY_SECONDS = 3600;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final SecretKeySpec KEY = createKey();
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(TokenHelper::createMac);
+
+    /**
+     * Creates a signed token for a user.
+     *
+     * @param userID    the ID of the user
+     * @param expiresAt the expiry time in epoch milliseconds
+     * @return a signed token
+     */
+    public static String createToken(int userID, long expiresAt) {
+        byte[] payload = (userID + ":" + expiresAt).getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    /**
+     * Validates a token.
+     *
+     * @param token the token to validate
+     * @return the ID of the user the token was issued to, or -1 if the token is invalid or expired
+     */
+    public static int validateToken(String token) {
+        try {
+            int separator = token.indexOf('.');
+            if (separator < 0) {
+                return -1;
+            }
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(token.substring(0, separator));
+            byte[] signature = decoder.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return -1;
+            }
+            String[] claims = new String(payload, StandardCharsets.UTF_8).split(":");
+            if (claims.length != 2 || Long.parseLong(claims[1]) < System.currentTimeMillis()) {
+                return -1;
+            }
+            return Integer.parseInt(claims[0]);
+        } catch (IllegalArgumentException ex) {
+            return -1;
+        }
+    }
+
+    private static byte[] sign(byte[] payload) {
+        return MAC.get().doFinal(payload);
+    }
+
+    private static SecretKeySpec createKey() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    private static Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(KEY);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
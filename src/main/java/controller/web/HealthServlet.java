@@ -0,0 +1,39 @@
+package controller.web;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Reports whether the application is ready to receive traffic.
+ * Listens to "/health/ready" path.
+ * Returns 503 until the warm-up of the {@link WarmUpListener} has completed, 200 afterwards.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@WebServlet("/health/ready")
+public class HealthServlet extends HttpServlet {
+
+    /**
+     * Returns the readiness of the application.
+     *
+     * @param request  the request
+     * @param response the response
+     * @throws IOException if the response couldn't be written
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean ready = Boolean.TRUE.equals(getServletContext().getAttribute(WarmUpListener.READY_ATTRIBUTE));
+        response.setStatus(ready ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        PrintWriter out = response.getWriter();
+        out.print(ready ? "ready" : "warming up");
+        out.flush();
+    }
+}
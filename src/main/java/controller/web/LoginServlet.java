@@ -3,6 +3,7 @@ package controller.web;
 import model.User;
 import model.UserException;
 import model.UserManager;
+import monitoring.StructuredLog;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
@@ -50,11 +51,11 @@ public class LoginServlet extends HttpServlet {
             try {
                 view = request.getRequestDispatcher("index.jsp");
                 view.forward(request, response);
-                LOGGER.info(" - - - - Loading /login - - - - ");
+                StructuredLog.sampled(LOGGER, "page_loaded", "page", "/login");
             } catch (ServletException e) {
                 view = request.getRequestDispatcher("errors.jsp");
                 view.forward(request, response);
-                LOGGER.severe(" - - - - Error occurred: " + e.getMessage() + " - - - - ");
+                LOGGER.severe(() -> " - - - - Error occurred: " + e.getMessage() + " - - - - ");
             }
         }
     }
@@ -94,7 +95,7 @@ public class LoginServlet extends HttpServlet {
                 exception.printStackTrace();
                 view = request.getRequestDispatcher("errors.jsp");
                 view.forward(request, response);
-                LOGGER.severe(" - - - - Error occurred: " + e.getMessage() + " - - - - ");
+                LOGGER.severe(() -> " - - - - Error occurred: " + e.getMessage() + " - - - - ");
             }
         }
     }
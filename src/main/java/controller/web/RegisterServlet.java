@@ -4,6 +4,7 @@ import model.User;
 import model.UserException;
 import model.UserManager;
 import model.helper.XmlHelper;
+import monitoring.StructuredLog;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
@@ -52,12 +53,12 @@ public class RegisterServlet extends HttpServlet {
             try {
                 view = request.getRequestDispatcher("register.jsp");
                 view.forward(request, response);
-                LOGGER.info(" - - - - Loading /register - - - - ");
+                StructuredLog.sampled(LOGGER, "page_loaded", "page", "/register");
             } catch (ServletException e) {
                 e.printStackTrace();
                 view = request.getRequestDispatcher("errors.jsp");
                 view.forward(request, response);
-                LOGGER.severe(" - - - - Error occurred: " + e.getMessage() + " - - - - ");
+                LOGGER.severe(() -> " - - - - Error occurred: " + e.getMessage() + " - - - - ");
             }
         }
     }
@@ -82,8 +83,8 @@ public class RegisterServlet extends HttpServlet {
         if (isValidUserData(name, firstPassword, secondPassword)) {
             UserManager userManager = UserManager.getInstance(servletContext);
             try {
-                userManager.register(name, firstPassword);
-                userManager.writeData(servletContext);
+                User user = userManager.register(name, firstPassword);
+                userManager.writeData(servletContext, user);
                 request.setAttribute("registerSuccessful", true);
                 view = request.getRequestDispatcher("index.jsp");
                 view.forward(request, response);
@@ -96,7 +97,7 @@ public class RegisterServlet extends HttpServlet {
             } catch (ServletException e) {
                 view = request.getRequestDispatcher("errors.jsp");
                 view.forward(request, response);
-                LOGGER.severe(" - - - - Error occurred: " + e.getMessage() + " - - - - ");
+                LOGGER.severe(() -> " - - - - Error occurred: " + e.getMessage() + " - - - - ");
             }
         } else {
             try {
@@ -108,7 +109,7 @@ public class RegisterServlet extends HttpServlet {
                 e.printStackTrace();
                 view = request.getRequestDispatcher("errors.jsp");
                 view.forward(request, response);
-                LOGGER.severe(" - - - - Error occurred: " + e.getMessage() + " - - - - ");
+                LOGGER.severe(() -> " - - - - Error occurred: " + e.getMessage() + " - - - - ");
             }
         }
     }
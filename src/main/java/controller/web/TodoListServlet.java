@@ -1,8 +1,10 @@
 package controller.web;
 
 import model.Todo;
+import model.TodoOrder;
 import model.User;
 import model.UserManager;
+import monitoring.StructuredLog;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
@@ -18,7 +20,7 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
- * A servlet for reading, filtering and deleting multiple todo items.
+ * A servlet for reading, filtering, sorting and deleting multiple todo items.
  * Listens to "/todos" path.
  * Redirects to the login page if no user is present/authorized.
  *
@@ -42,7 +44,7 @@ public class TodoListServlet extends HttpServlet {
         request.setCharacterEncoding("UTF-8");
         response.setContentType("text/html");
         HttpSession session = request.getSession();
-        User user = (User) session.getAttribute("user");
+        User user = UserManager.getInstance(getServletContext()).getSessionUser((User) session.getAttribute("user"));
         RequestDispatcher view;
         if (user == null) {
             response.reset();
@@ -50,21 +52,24 @@ public class TodoListServlet extends HttpServlet {
             LOGGER.info(" - - - - User not logged in  - - - - ");
         } else {
             try {
-                request.setAttribute("todos", user.getTodos());
+                TodoOrder order = order(request.getParameter("sort"));
+                request.setAttribute("todos", user.getTodos(null, null, order));
+                request.setAttribute("sortOrder", order.name().toLowerCase());
                 view = request.getRequestDispatcher("todos.jsp");
                 view.forward(request, response);
-                LOGGER.info(" - - - - Getting users todo list  - - - - ");
+                StructuredLog.sampled(LOGGER, "todo_list");
             } catch (ServletException e) {
                 e.printStackTrace();
                 view = request.getRequestDispatcher("errors.jsp");
                 view.forward(request, response);
-                LOGGER.severe(" - - - - Error occurred: " + e.getMessage() + " - - - - ");
+                LOGGER.severe(() -> " - - - - Error occurred: " + e.getMessage() + " - - - - ");
             }
         }
     }
 
     /**
-     * Filters multiple todos items when category or/and status parameter is present.
+     * Filters multiple todos items when category or/and status parameter is present and sorts them by the sort
+     * parameter.
      * Deletes all completed todo items when the corresponding button is pressed.
      *
      * @param request  the request
@@ -77,9 +82,10 @@ public class TodoListServlet extends HttpServlet {
         request.setCharacterEncoding("UTF-8");
         String category = request.getParameter("category");
         String status = request.getParameter("status");
+        TodoOrder order = order(request.getParameter("sort"));
         String deleteTodos = request.getParameter("deleteCompletedTodos");
         HttpSession session = request.getSession();
-        User user = (User) session.getAttribute("user");
+        User user = UserManager.getInstance(getServletContext()).getSessionUser((User) session.getAttribute("user"));
         RequestDispatcher view;
         if (user == null) {
             response.reset();
@@ -90,28 +96,37 @@ public class TodoListServlet extends HttpServlet {
                 deleteCompletedTodos(user);
                 ServletContext servletContext = getServletContext();
                 UserManager userManager = UserManager.getInstance(servletContext);
-                userManager.writeData(servletContext);
+                userManager.writeData(servletContext, user);
             }
 
-            request.setAttribute("todos", user.getTodos(category, status));
+            request.setAttribute("todos", user.getTodos(category, status, order));
             request.setAttribute("categoryFilter", category);
             request.setAttribute("statusFilter", status);
+            request.setAttribute("sortOrder", order.name().toLowerCase());
             boolean listIsFiltered = (category != null && !category.isEmpty()) || (status != null && !status.isEmpty());
             request.setAttribute("listIsFiltered", listIsFiltered);
 
             try {
                 view = request.getRequestDispatcher("todos.jsp");
                 view.forward(request, response);
-                LOGGER.info(" - - - - Filtering user list  - - - - ");
+                StructuredLog.sampled(LOGGER, "todo_list_filtered");
             } catch (ServletException | IOException e) {
                 e.printStackTrace();
                 view = request.getRequestDispatcher("errors.jsp");
                 view.forward(request, response);
-                LOGGER.severe(" - - - - Error occurred: " + e.getMessage() + " - - - - ");
+                LOGGER.severe(() -> " - - - - Error occurred: " + e.getMessage() + " - - - - ");
             }
         }
     }
 
+    /**
+     * Gets the order of the list, the default order if the sort parameter is missing or unknown.
+     */
+    private static TodoOrder order(String sort) {
+        TodoOrder order = TodoOrder.of(sort);
+        return (order != null) ? order : TodoOrder.DUE;
+    }
+
     private void deleteCompletedTodos(User user) {
         List<Todo> todos = user.getTodos().stream().filter(Todo::isCompleted).collect(Collectors.toList());
         if (todos.size() > 0) {
@@ -43,7 +43,7 @@ public class TodoServlet extends HttpServlet {
         request.setCharacterEncoding("UTF-8");
         response.setContentType("text/html");
         HttpSession session = request.getSession();
-        User user = (User) session.getAttribute("user");
+        User user = UserManager.getInstance(getServletContext()).getSessionUser((User) session.getAttribute("user"));
         String todoID = request.getParameter("todoID");
 
 
@@ -89,7 +89,7 @@ public class TodoServlet extends HttpServlet {
                 e.printStackTrace();
                 view = request.getRequestDispatcher("errors.jsp");
                 view.forward(request, response);
-                LOGGER.severe(" - - - - Error occurred: " + e.getMessage() + " - - - - ");
+                LOGGER.severe(() -> " - - - - Error occurred: " + e.getMessage() + " - - - - ");
             }
         }
     }
@@ -111,7 +111,7 @@ public class TodoServlet extends HttpServlet {
         String newCategory = request.getParameter("newCategory");
         String deleteButton = request.getParameter("Delete");
         HttpSession session = request.getSession();
-        User user = (User) session.getAttribute("user");
+        User user = UserManager.getInstance(getServletContext()).getSessionUser((User) session.getAttribute("user"));
         Integer todoID = null;
 
         if (user == null) {
@@ -130,13 +130,13 @@ public class TodoServlet extends HttpServlet {
             if (isDeleteButtonPressed(deleteButton, todoID)) {
                 try {
                     user.deleteTodo(user.getTodo(todoID));
-                    userManager.writeData(servletContext);
+                    userManager.writeData(servletContext, user);
                     response.sendRedirect("todos");
                     LOGGER.info(" - - - - User deleted todo  - - - - ");
                 } catch (IOException ioException) {
                     view = request.getRequestDispatcher("errors.jsp");
                     view.forward(request, response);
-                    LOGGER.severe(" - - - - Error occurred: " + ioException.getMessage() + " - - - - ");
+                    LOGGER.severe(() -> " - - - - Error occurred: " + ioException.getMessage() + " - - - - ");
                 }
             } else {
                 // Create or update newTodo
@@ -173,7 +173,7 @@ public class TodoServlet extends HttpServlet {
                     updateExistingTodo(title, category, user, todoID, dueDate, isImportant, isCompleted);
                 }
 
-                userManager.writeData(servletContext);
+                userManager.writeData(servletContext, user);
                 response.sendRedirect("todos");
                 LOGGER.info(" - - - - User successfully created or updated todo  - - - - ");
             }
@@ -206,12 +206,12 @@ public class TodoServlet extends HttpServlet {
      * @param isCompleted an optional boolean flag indicating whether the todo is completed
      */
     private void updateExistingTodo(String title, String category, User user, Integer todoID, LocalDate dueDate, boolean isImportant, boolean isCompleted) {
-        Todo todo = user.getTodo(todoID);
+        Todo todo = new Todo(user.getTodo(todoID));
         todo.setTitle(title);
         todo.setCategory(category);
         todo.setDueDate(dueDate);
         todo.setImportant(isImportant);
-        todo.setCompleted(isCompleted);
+        todo.markCompleted(isCompleted);
 
         user.updateTodo(todo);
     }
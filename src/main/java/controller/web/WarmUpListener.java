@@ -0,0 +1,157 @@
+package controller.web;
+
+import controller.rest.helper.JsonHelper;
+import model.Todo;
+import model.TodoOrder;
+import model.User;
+import model.UserManager;
+import model.helper.ConfigHelper;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Loads the data when the application is deployed and warms up the hot paths afterwards.
+ * The data is loaded before the application accepts requests, so no request has to wait for it. The warm-up runs
+ * the JSON serialization, the todo filters and the sorting in parallel so the JIT compiler compiles them before the
+ * application receives traffic. Until the warm-up has completed, "/health/ready" reports the application as not ready.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@WebListener
+public class WarmUpListener implements ServletContextListener {
+    public static final String READY_ATTRIBUTE = "ready";
+
+    private static final Logger LOGGER = Logger.getLogger(WarmUpListener.class.getName());
+    private static final String[] STATUSES = {null, "complete", "incomplete", "overdue", "important"};
+    private static final TodoOrder[] ORDERS = TodoOrder.values();
+    private static final int SAMPLE_SIZE = 100;
+
+    private ExecutorService executor;
+    private volatile boolean destroyed;
+
+    /**
+     * Loads the data and starts the warm-up in the background.
+     * The number of warm-up iterations can be configured with the context parameter "warmUpIterations".
+     *
+     * @param event the event containing the servlet context
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        ServletContext servletContext = event.getServletContext();
+        servletContext.setAttribute(READY_ATTRIBUTE, false);
+        long start = System.currentTimeMillis();
+        UserManager userManager = UserManager.getInstance(servletContext);
+        LOGGER.info(() -> " - - - - Data loaded in " + (System.currentTimeMillis() - start) + " ms - - - - ");
+
+        int iterations = (int) ConfigHelper.getLong(servletContext, "warmUpIterations", 1000);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(() -> {
+            long warmUpStart = System.currentTimeMillis();
+            try {
+                warmUp(userManager, iterations);
+                LOGGER.info(() -> " - - - - Warm-up completed in " + (System.currentTimeMillis() - warmUpStart) + " ms - - - - ");
+            } catch (RuntimeException ex) {
+                LOGGER.warning(() -> " - - - - Warm-up failed: " + ex.getMessage() + " - - - - ");
+            } finally {
+                servletContext.setAttribute(READY_ATTRIBUTE, true);
+            }
+        });
+    }
+
+    /**
+     * Stops a warm-up which is still running.
+     *
+     * @param event the event containing the servlet context
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        destroyed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the hot paths in parallel. Only copies of the todo lists are sorted, so the data is not modified.
+     *
+     * @param userManager the loaded User Manager
+     * @param iterations  the number of times each hot path is run
+     */
+    private void warmUp(UserManager userManager, int iterations) {
+        List<User> users = new ArrayList<>(userManager.getUsers());
+        List<Todo> sample = createSample(users);
+        List<String> categories = new ArrayList<>();
+        for (User user : users) {
+            categories.addAll(user.getDistinctCategories());
+        }
+
+        CompletableFuture<Void> serialization = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < iterations && !destroyed; i++) {
+                JsonHelper.writeTodoJsonData(sample);
+                JsonHelper.writeTodoJsonData(sample.get(i % sample.size()));
+                JsonHelper.writeCategoryJsonData(categories);
+            }
+        });
+        CompletableFuture<Void> filtering = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < iterations && !users.isEmpty() && !destroyed; i++) {
+                User user = users.get(i % users.size());
+                for (String status : STATUSES) {
+                    user.getTodos(null, status);
+                    user.getTodosStatistics(null, status);
+                }
+                user.getDistinctCategories();
+            }
+        });
+        CompletableFuture<Void> sorting = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < iterations && !users.isEmpty() && !destroyed; i++) {
+                List<Todo> copy = new ArrayList<>(users.get(i % users.size()).getTodos());
+                Collections.shuffle(copy);
+                // a shuffled copy, so the orders of the users themselves are only sorted when they are requested
+                copy.sort(ORDERS[i % ORDERS.length].comparator());
+            }
+        });
+        CompletableFuture.allOf(serialization, filtering, sorting).join();
+    }
+
+    /**
+     * Creates a sample list of todos for the serialization. Existing todos are used if there are any.
+     *
+     * @param users the registered users
+     * @return a list of todos
+     */
+    private List<Todo> createSample(List<User> users) {
+        List<Todo> sample = new ArrayList<>();
+        for (User user : users) {
+            for (Todo todo : user.getTodos()) {
+                if (sample.size() >= SAMPLE_SIZE) {
+                    return sample;
+                }
+                sample.add(todo);
+            }
+        }
+        while (sample.size() < SAMPLE_SIZE) {
+            Todo todo = new Todo();
+            todo.setTitle("Warm-up " + sample.size());
+            todo.setCategory("Warm-up");
+            todo.setDueDate(LocalDate.now().plusDays(sample.size()));
+            sample.add(todo);
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,97 @@
+package model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A reference-counted dictionary of the categories of a user's todos.
+ * Each category is stored once with the number of todos using it; the todos share the canonical instance of the
+ * category. An entry is dropped as soon as no todo uses the category anymore. Todos without a category are not
+ * counted.
+ * <p>
+ * The dictionary is not thread-safe and must be guarded by the writer lock of the user. Readers use the immutable
+ * view returned by {@link #counts()}, which is rebuilt only after the dictionary has changed.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+final class CategoryDictionary {
+    private final Map<String, Entry> entries = new HashMap<>();
+    private Map<String, Integer> counts = Collections.emptyMap();
+    private boolean changed;
+
+    /**
+     * A canonical category and the number of todos using it.
+     */
+    private static final class Entry {
+        private final String category;
+        private int count;
+
+        private Entry(String category) {
+            this.category = category;
+        }
+    }
+
+    /**
+     * Adds a reference to a category.
+     *
+     * @param category the category of a todo which is added to the list
+     * @return the canonical instance of the category
+     */
+    String acquire(String category) {
+        if (category == null) {
+            return null;
+        }
+        if (category.isEmpty()) {
+            return "";
+        }
+        Entry entry = entries.computeIfAbsent(category, Entry::new);
+        entry.count++;
+        changed = true;
+        return entry.category;
+    }
+
+    /**
+     * Removes a reference to a category. The category is dropped when no todo uses it anymore.
+     *
+     * @param category the category of a todo which is removed from the list
+     */
+    void release(String category) {
+        if (category == null || category.isEmpty()) {
+            return;
+        }
+        Entry entry = entries.get(category);
+        if (entry != null) {
+            if (--entry.count == 0) {
+                entries.remove(category);
+            }
+            changed = true;
+        }
+    }
+
+    /**
+     * Removes all categories.
+     */
+    void clear() {
+        entries.clear();
+        changed = true;
+    }
+
+    /**
+     * Returns the number of todos per category.
+     *
+     * @return an immutable map of the categories to the number of todos using them
+     */
+    Map<String, Integer> counts() {
+        if (changed) {
+            Map<String, Integer> copy = new HashMap<>(entries.size() * 4 / 3 + 1);
+            for (Entry entry : entries.values()) {
+                copy.put(entry.category, entry.count);
+            }
+            counts = Collections.unmodifiableMap(copy);
+            changed = false;
+        }
+        return counts;
+    }
+}
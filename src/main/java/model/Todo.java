@@ -1,26 +1,46 @@
 package model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import model.helper.IdAllocator;
 
-import java.time.DateTimeException;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
-import java.util.Objects;
 
 /**
  * The Todo class implements a Todo
+ * <p>
+ * The todo is stored compactly, as the application holds many of them: the IDs are primitive ints, the due date is
+ * stored as epoch days and the flags are packed into one byte. The category is the canonical instance of the
+ * category dictionary of the user. The getters and setters convert from and to the stored representation.
+ * <p>
+ * A todo records the day it was completed, so it can be moved to the archive of the user some time after completion.
+ * <p>
+ * The first characters of the title are packed into a primitive sort key when the title is set, so todos are
+ * ordered by title by comparing two longs; the full titles are only compared if they begin with the same characters.
  *
  * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
  * @version 1.0
  */
 public class Todo implements Comparable<Todo> {
-    private static int todoCounter;
-    private Integer todoID;
-    private Integer userID;
+    private static final IdAllocator idAllocator = new IdAllocator();
+    private static final int NO_DUE_DATE = Integer.MIN_VALUE;
+    private static final int NOT_COMPLETED = Integer.MIN_VALUE;
+    private static final byte IMPORTANT = 1;
+    private static final byte COMPLETED = 2;
+    private static final int TITLE_KEY_CHARS = Long.SIZE / Character.SIZE;
+
+    private int todoID;
+    private int userID;
     private String title;
+    private long titleKey;
     private String category;
-    private LocalDate dueDate;
-    private boolean isImportant = false;
-    private boolean isCompleted = false;
+    private int dueDay = NO_DUE_DATE;
+    private int completedDay = NOT_COMPLETED;
+    private byte flags;
+    private long version;
 
     /**
      * Constructs a todo.
@@ -30,18 +50,18 @@ public class Todo implements Comparable<Todo> {
 
     /**
      * Constructs a todo.
-     * The todoCounter is incremented and used as the Todo ID.
+     * The next ID of the ID allocator is used as the Todo ID.
      *
      * @param title the title that describes the todo
      */
     public Todo(String title) {
-        this.todoID = todoCounter++;
-        this.title = title;
+        this.todoID = idAllocator.allocate();
+        setTitle(title);
     }
 
     /**
      * Constructs a todo.
-     * The todoCounter is incremented and used as the Todo ID.
+     * The next ID of the ID allocator is used as the Todo ID.
      *
      * @param title    the title of the todo
      * @param category an optional category
@@ -50,12 +70,12 @@ public class Todo implements Comparable<Todo> {
     public Todo(String title, String category, LocalDate dueDate) {
         this(title);
         this.category = category;
-        this.dueDate = dueDate;
+        setDueDate(dueDate);
     }
 
     /**
      * Constructs a todo.
-     * The todoCounter is incremented and used as the Todo ID.
+     * The next ID of the ID allocator is used as the Todo ID.
      *
      * @param title       the title of the todo
      * @param category    an optional category
@@ -64,12 +84,12 @@ public class Todo implements Comparable<Todo> {
      */
     public Todo(String title, String category, LocalDate dueDate, boolean isImportant) {
         this(title, category, dueDate);
-        this.isImportant = isImportant;
+        setImportant(isImportant);
     }
 
     /**
      * Constructs a todo.
-     * The todoCounter is incremented and used as the Todo ID.
+     * The next ID of the ID allocator is used as the Todo ID.
      *
      * @param title       the title of the todo
      * @param category    an optional category
@@ -79,14 +99,36 @@ public class Todo implements Comparable<Todo> {
      */
     public Todo(String title, String category, LocalDate dueDate, boolean isImportant, boolean isCompleted) {
         this(title, category, dueDate, isImportant);
-        this.isCompleted = isCompleted;
+        markCompleted(isCompleted);
+    }
+
+    /**
+     * Constructs a copy of a todo with the same ID. A todo is changed by changing a copy and updating the user with
+     * it, because the todos in the list of a user are shared by concurrent readers.
+     *
+     * @param other the todo to copy
+     */
+    public Todo(Todo other) {
+        this.todoID = other.todoID;
+        this.userID = other.userID;
+        this.title = other.title;
+        this.titleKey = other.titleKey;
+        this.category = other.category;
+        this.dueDay = other.dueDay;
+        this.completedDay = other.completedDay;
+        this.flags = other.flags;
+        this.version = other.version;
     }
 
     public static void setTodoCounter(Integer counter) {
-        todoCounter = counter;
+        idAllocator.reset(counter);
     }
 
-    public Integer getTodoID() {
+    static int getTodoIDHighWaterMark() {
+        return idAllocator.getHighWaterMark();
+    }
+
+    public int getTodoID() {
         return todoID;
     }
 
@@ -100,6 +142,24 @@ public class Todo implements Comparable<Todo> {
 
     public void setTitle(String title) {
         this.title = title;
+        this.titleKey = titleKey(title);
+    }
+
+    /**
+     * Packs the first characters of a title into a long, so comparing the keys of two titles as unsigned longs gives
+     * the same result as comparing the titles, unless the keys are equal. A missing character is packed as 0, so a
+     * shorter title is smaller than a longer one starting with it.
+     *
+     * @param title the title
+     * @return the sort key of the title
+     */
+    private static long titleKey(String title) {
+        long key = 0;
+        int length = (title != null) ? title.length() : 0;
+        for (int i = 0; i < TITLE_KEY_CHARS; i++) {
+            key = key << Character.SIZE | ((i < length) ? title.charAt(i) : 0);
+        }
+        return key;
     }
 
     public String getCategory() {
@@ -111,27 +171,141 @@ public class Todo implements Comparable<Todo> {
     }
 
     public LocalDate getDueDate() {
-        return dueDate;
+        return (dueDay != NO_DUE_DATE) ? LocalDate.ofEpochDay(dueDay) : null;
     }
 
     public void setDueDate(LocalDate dueDate) {
-        this.dueDate = dueDate;
+        this.dueDay = (dueDate != null) ? Math.toIntExact(dueDate.toEpochDay()) : NO_DUE_DATE;
     }
 
     public boolean isImportant() {
-        return isImportant;
+        return (flags & IMPORTANT) != 0;
     }
 
     public void setImportant(boolean important) {
-        isImportant = important;
+        flags = (byte) (important ? flags | IMPORTANT : flags & ~IMPORTANT);
     }
 
     public boolean isCompleted() {
-        return isCompleted;
+        return (flags & COMPLETED) != 0;
     }
 
+    /**
+     * Sets whether the todo is completed, as read from the data. The day of completion is read separately; a completed
+     * todo read without it is stamped with the day its todo list is loaded by the user.
+     *
+     * @param completed true if the todo is completed
+     */
     public void setCompleted(boolean completed) {
-        isCompleted = completed;
+        if (!completed) {
+            completedDay = NOT_COMPLETED;
+        }
+        flags = (byte) (completed ? flags | COMPLETED : flags & ~COMPLETED);
+    }
+
+    /**
+     * Marks the todo as completed or not completed by the user. A todo which is completed now records today as the
+     * day of its completion; a todo which is no longer completed loses it.
+     *
+     * @param completed true if the todo is completed
+     */
+    public void markCompleted(boolean completed) {
+        if (completed && completedDay == NOT_COMPLETED) {
+            completedDay = Math.toIntExact(LocalDate.now().toEpochDay());
+        }
+        setCompleted(completed);
+    }
+
+    /**
+     * Gets the day the todo was completed.
+     *
+     * @return the day of completion, or null if the todo is not completed
+     */
+    public LocalDate getCompletedOn() {
+        return (completedDay != NOT_COMPLETED) ? LocalDate.ofEpochDay(completedDay) : null;
+    }
+
+    public void setCompletedOn(LocalDate completedOn) {
+        this.completedDay = (completedOn != null) ? Math.toIntExact(completedOn.toEpochDay()) : NOT_COMPLETED;
+    }
+
+    /**
+     * Indicates whether the todo was completed before a day.
+     *
+     * @param epochDay the day as epoch day
+     * @return true if the todo is completed and was completed before the day
+     */
+    boolean isCompletedBefore(int epochDay) {
+        return isCompleted() && completedDay != NOT_COMPLETED && completedDay < epochDay;
+    }
+
+    /**
+     * Gets the version of the todo. The version is incremented by the user whenever the todo is updated.
+     *
+     * @return the version of the todo
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Writes the todo as a record of the archive.
+     *
+     * @param out the output of the record
+     * @throws IOException is thrown if the record couldn't be written
+     */
+    void writeRecord(DataOutput out) throws IOException {
+        out.writeInt(todoID);
+        out.writeLong(version);
+        out.writeInt(dueDay);
+        out.writeInt(completedDay);
+        out.writeByte(flags);
+        writeString(out, title);
+        writeString(out, category);
+    }
+
+    /**
+     * Reads a todo from a record of the archive.
+     *
+     * @param record the record
+     * @param userID the user the archive belongs to
+     * @return the todo
+     */
+    static Todo readRecord(ByteBuffer record, int userID) {
+        Todo todo = new Todo();
+        todo.todoID = record.getInt();
+        todo.userID = userID;
+        todo.version = record.getLong();
+        todo.dueDay = record.getInt();
+        todo.completedDay = record.getInt();
+        todo.flags = record.get();
+        todo.setTitle(readString(record));
+        todo.category = readString(record);
+        return todo;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     /**
@@ -141,7 +315,7 @@ public class Todo implements Comparable<Todo> {
      */
     @JsonIgnore
     public boolean isOverdue() {
-        return dueDate != null && (dueDate.compareTo(LocalDate.now()) < 0) && !isCompleted;
+        return dueDay != NO_DUE_DATE && dueDay < LocalDate.now().toEpochDay() && !isCompleted();
     }
 
     /**
@@ -156,41 +330,63 @@ public class Todo implements Comparable<Todo> {
      */
     @Override
     public int compareTo(Todo other) {
-        try {
-            if (this.equals(other)) {
-                return 0;
-            }
-            LocalDate otherDate = other.getDueDate();
-            if (dueDate == null && otherDate == null) {
-                return compareTitleOrTodoID(other);
-            } else if (dueDate == null) {
-                return 1;
-            } else if (otherDate == null) {
-                return -1;
-            } else if (dueDate.compareTo(otherDate) == 0) {
-                return compareTitleOrTodoID(other);
-            }
-            return dueDate.compareTo(otherDate);
-        } catch (DateTimeException ex) {
-            ex.printStackTrace();
-            return compareTitleOrTodoID(other);
+        if (todoID == other.todoID) {
+            return 0;
+        }
+        if (dueDay == other.dueDay) {
+            return compareByTitle(this, other);
+        } else if (dueDay == NO_DUE_DATE) {
+            return 1;
+        } else if (other.dueDay == NO_DUE_DATE) {
+            return -1;
         }
+        return Integer.compare(dueDay, other.dueDay);
     }
 
     /**
-     * Compares this object with the specified object for order. The order is specified by the title or the id of the
-     * Todo objects.
+     * Compares two todos by their title and then by their id. A todo without a title comes first, as its sort key
+     * is the same as the one of an empty title.
      *
-     * @param other the object to be compared
-     * @return a negative integer, zero, or a positive integer as this object is less than, equal to, or
-     * greater than the specified object
+     * @param todo  the first todo to be compared
+     * @param other the second todo to be compared
+     * @return a negative integer, zero, or a positive integer as the first todo is less than, equal to, or
+     * greater than the second
      */
-    private int compareTitleOrTodoID(Todo other) {
-        if (title.compareTo(other.getTitle()) == 0) {
-            return todoID.compareTo(other.getTodoID());
-        } else {
-            return title.compareTo(other.getTitle());
+    static int compareByTitle(Todo todo, Todo other) {
+        int result = Long.compareUnsigned(todo.titleKey, other.titleKey);
+        if (result == 0 && todo.title != other.title) {
+            if (todo.title == null || other.title == null) {
+                result = (todo.title == null) ? -1 : 1;
+            } else {
+                result = todo.title.compareTo(other.title);
+            }
         }
+        return (result == 0) ? Integer.compare(todo.todoID, other.todoID) : result;
+    }
+
+    /**
+     * Compares two todos by their importance, the important todo first, and then in their natural order.
+     *
+     * @param todo  the first todo to be compared
+     * @param other the second todo to be compared
+     * @return a negative integer, zero, or a positive integer as the first todo is less than, equal to, or
+     * greater than the second
+     */
+    static int compareByImportance(Todo todo, Todo other) {
+        int result = Integer.compare(other.flags & IMPORTANT, todo.flags & IMPORTANT);
+        return (result == 0) ? todo.compareTo(other) : result;
+    }
+
+    /**
+     * Compares two todos by their id, i.e. in the order they were created.
+     *
+     * @param todo  the first todo to be compared
+     * @param other the second todo to be compared
+     * @return a negative integer, zero, or a positive integer as the first todo is less than, equal to, or
+     * greater than the second
+     */
+    static int compareByTodoID(Todo todo, Todo other) {
+        return Integer.compare(todo.todoID, other.todoID);
     }
 
     @Override
@@ -200,9 +396,11 @@ public class Todo implements Comparable<Todo> {
             ", userID='" + userID + '\'' +
             ", title='" + title + '\'' +
             ", category='" + category + '\'' +
-            ", dueDate=" + dueDate +
-            ", isImportant=" + isImportant +
-            ", isCompleted=" + isCompleted +
+            ", dueDate=" + getDueDate() +
+            ", isImportant=" + isImportant() +
+            ", isCompleted=" + isCompleted() +
+            ", completedOn=" + getCompletedOn() +
+            ", version=" + version +
             ", isOverdue=" + isOverdue() +
             '}';
     }
@@ -218,7 +416,7 @@ public class Todo implements Comparable<Todo> {
         if (this == other) return true;
         if (other == null || getClass() != other.getClass()) return false;
         Todo todo = (Todo) other;
-        return Objects.equals(todoID, todo.todoID);
+        return todoID == todo.todoID;
     }
 
     /**
@@ -228,6 +426,6 @@ public class Todo implements Comparable<Todo> {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(todoID);
+        return Integer.hashCode(todoID);
     }
 }
@@ -0,0 +1,169 @@
+package model;
+
+import monitoring.Histogram;
+import monitoring.MetricsRegistry;
+import monitoring.Span;
+import monitoring.Tracer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The archive of the completed todos of a user.
+ * <p>
+ * The archive is an append-only binary file. It starts with a magic number, followed by a record per todo which
+ * consists of its length and the todo written by {@link Todo#writeRecord}. The file is memory-mapped for reading, so
+ * the archived todos are not kept on the heap; they are only decoded when they are requested. A record which was
+ * not completely written, e.g. because the application was stopped while appending, is ignored and overwritten by the
+ * next append.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+final class TodoArchive {
+    private static final int MAGIC = 0x54444131; // "TDA1"
+    private static final int ALL = -1;
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getInstance();
+    private static final LongAdder archived = METRICS.counter("todoapp_todos_archived_total", "Number of completed todos moved to the archive.");
+    private static final Histogram readTime = METRICS.timer("todoapp_archive_read_duration_seconds", "Time to read the archive of a user.");
+
+    private final Path file;
+    private final int userID;
+    // guarded by this
+    private MappedByteBuffer mapped;
+
+    /**
+     * Constructs the archive of a user.
+     *
+     * @param file   the archive file
+     * @param userID the ID of the user
+     */
+    TodoArchive(Path file, int userID) {
+        this.file = file;
+        this.userID = userID;
+    }
+
+    /**
+     * Appends todos to the archive. The file is synced to the disk before the method returns, so the todos can be
+     * removed from the todo list of the user afterwards.
+     *
+     * @param todos the todos to append
+     * @throws IOException is thrown if the todos couldn't be appended
+     */
+    synchronized void append(List<Todo> todos) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        for (Todo todo : todos) {
+            record.reset();
+            todo.writeRecord(new DataOutputStream(record));
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC);
+                header.flip();
+                channel.write(header);
+            } else {
+                long end = records(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), null, ALL);
+                channel.truncate(end);
+                channel.position(end);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        archived.add(todos.size());
+    }
+
+    /**
+     * Reads all todos of the archive. The file is mapped again only if it has grown since it was last mapped.
+     *
+     * @return the archived todos in the order they were archived
+     * @throws IOException is thrown if the archive couldn't be read
+     */
+    synchronized List<Todo> read() throws IOException {
+        return read(ALL);
+    }
+
+    /**
+     * Reads a todo of the archive. Only the IDs of the other records are read, they are not decoded.
+     *
+     * @param todoID the ID of the todo
+     * @return the todo as it was archived last, or null if it is not archived
+     * @throws IOException is thrown if the archive couldn't be read
+     */
+    synchronized Todo find(int todoID) throws IOException {
+        List<Todo> todos = read(todoID);
+        return todos.isEmpty() ? null : todos.get(todos.size() - 1);
+    }
+
+    private List<Todo> read(int todoID) throws IOException {
+        List<Todo> todos = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return todos;
+        }
+        long start = System.nanoTime();
+        Span span = Tracer.span("archive");
+        try {
+            long size = Files.size(file);
+            if (mapped == null || mapped.capacity() != size) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+            }
+            records(mapped.duplicate(), todos, todoID);
+        } finally {
+            span.close();
+        }
+        readTime.record(System.nanoTime() - start);
+        return todos;
+    }
+
+    /**
+     * Reads the complete records of an archive.
+     *
+     * @param buffer the content of the archive file
+     * @param todos  the list to add the todos of the records to, or null to only determine the end of the records
+     * @param todoID the ID of the todos to add, or ALL
+     * @return the position after the last complete record
+     * @throws IOException is thrown if the file is not an archive
+     */
+    private long records(ByteBuffer buffer, List<Todo> todos, int todoID) throws IOException {
+        if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not an archive: " + file);
+        }
+        int end = buffer.position();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt();
+            if (length < 0 || buffer.remaining() < length) {
+                break;
+            }
+            // the record begins with the ID of the todo
+            if (todos != null && (todoID == ALL || buffer.getInt(buffer.position()) == todoID)) {
+                ByteBuffer record = buffer.slice();
+                record.limit(length);
+                todos.add(Todo.readRecord(record, userID));
+            }
+            buffer.position(buffer.position() + length);
+            end = buffer.position();
+        }
+        return end;
+    }
+}
@@ -0,0 +1,66 @@
+package model;
+
+import java.util.Comparator;
+
+/**
+ * The orders in which the todo list of a user can be requested.
+ * <p>
+ * Every order ends with the todo ID, so no two todos of a list are equal, and compares the precomputed sort keys of
+ * the todos, so a comparison neither allocates nor compares the full titles unless their beginnings are equal.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public enum TodoOrder {
+    /**
+     * By due date, todos without due date last, then by title. This is the natural order of the todos.
+     */
+    DUE(Comparator.naturalOrder()),
+    /**
+     * By title.
+     */
+    TITLE(Todo::compareByTitle),
+    /**
+     * The important todos first, each group in the order of DUE.
+     */
+    IMPORTANT(Todo::compareByImportance),
+    /**
+     * In the order the todos were created, i.e. by todo ID.
+     */
+    CREATED(Todo::compareByTodoID);
+
+    private static final TodoOrder[] ORDERS = values();
+
+    private final Comparator<Todo> comparator;
+
+    TodoOrder(Comparator<Todo> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Gets the comparator which sorts todos in this order.
+     *
+     * @return the comparator
+     */
+    public Comparator<Todo> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Gets an order by its name, ignoring the case.
+     *
+     * @param name the name of the order, e.g. the value of a sort parameter
+     * @return the order, DUE if no name is specified, or null if there is no order of this name
+     */
+    public static TodoOrder of(String name) {
+        if (name == null || name.isEmpty()) {
+            return DUE;
+        }
+        for (TodoOrder order : ORDERS) {
+            if (order.name().equalsIgnoreCase(name)) {
+                return order;
+            }
+        }
+        return null;
+    }
+}
@@ -1,40 +1,126 @@
 package model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import model.helper.IdAllocator;
+import monitoring.Span;
+import monitoring.TodoFilterEvent;
+import monitoring.TodoMutationEvent;
+import monitoring.Tracer;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * The User class implements a user with his list of Todos.
+ * <p>
+ * The list is read and mutated by concurrent requests. Readers get an immutable snapshot of the list without
+ * blocking. Writers are synchronized on the user, copy the list, apply their change and publish the new list and
+ * its version as a new snapshot, so a reader sees either the old or the new list but never a list in between.
+ * The todos of a snapshot must not be changed either: a todo is changed by updating a copy of it.
+ * <p>
+ * The categories of the todos are dictionary-encoded: equal categories share one canonical string instance, so a
+ * category used by thousands of todos is stored only once. The dictionary counts the todos per category and is
+ * maintained by the writers; each snapshot carries an immutable view of it, so the distinct categories and their
+ * counts are answered without scanning the list.
+ * <p>
+ * The todo list is sorted in the natural order of the todos. The other orders of {@link TodoOrder} are sorted on their
+ * first request and carried by the snapshot from then on: each writer merges its removed and added todos into every
+ * sorted order, instead of copying and sorting the whole list again.
+ * <p>
+ * The todo list of a user managed by the User Manager is persisted apart from the user and may be evicted from memory
+ * while the user is inactive; it is read again transparently on the next access. A user read from a partition file
+ * is not resident until his todos are accessed.
+ * <p>
+ * Todos completed some time ago are moved from the todo list to the archive of the user, an append-only file which is
+ * only read when the archived todos are requested. So they are neither kept on the heap nor sorted and filtered with
+ * the todo list.
  *
  * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
  * @version 1.0
  */
 @JacksonXmlRootElement(localName = "user")
 public class User {
-    private static int userCounter;
+    /**
+     * The expected version which matches any version of a todo.
+     */
+    public static final long ANY_VERSION = -1;
+
+    /**
+     * The estimated heap used by a todo in a list, without its title.
+     */
+    private static final int TODO_BYTES = 104;
+    /**
+     * The estimated heap used by a todo in each additional order of the list.
+     */
+    private static final int ORDER_BYTES = 4;
+
+    private static final IdAllocator idAllocator = new IdAllocator();
     private Integer userID;
     private String userName;
     private String password;
-    private List<Todo> todos = new ArrayList<>();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(),
+        0, 0);
+    // guarded by the writer lock
+    private final CategoryDictionary categories = new CategoryDictionary();
+    // set by the User Manager, null if the user isn't managed
+    private UserCache cache;
+    private volatile long persistedVersion = ANY_VERSION;
+    private volatile long lastAccess;
+    private volatile int archivedOn = Integer.MIN_VALUE;
+    // guarded by the writer lock, true once the todo list was evicted
+    private boolean evicted;
+    // guarded by the writer lock, created on first use
+    private TodoArchive archive;
+
+    /**
+     * An immutable todo list in its natural order, the same todos in the other orders sorted so far, the number of
+     * todos per category, its version and its estimated size in bytes.
+     * The todos of an evicted list are null, its version is retained.
+     */
+    static final class Snapshot {
+        final List<Todo> todos;
+        final Map<TodoOrder, List<Todo>> orders;
+        final Map<String, Integer> categoryCounts;
+        final long version;
+        final long size;
 
+        private Snapshot(List<Todo> todos, Map<TodoOrder, List<Todo>> orders, Map<String, Integer> categoryCounts,
+                         long version, long size) {
+            this.todos = todos;
+            this.orders = orders;
+            this.categoryCounts = categoryCounts;
+            this.version = version;
+            this.size = size;
+        }
+
+        private static Snapshot evicted(long version) {
+            return new Snapshot(null, Collections.emptyMap(), Collections.emptyMap(), version, 0);
+        }
+    }
+
+    /**
+     * Constructs a user read from a data file. His todo list is loaded on the first access, unless the data file
+     * contains it.
+     */
     public User() {
+        snapshot = Snapshot.evicted(0);
     }
 
     /**
      * Constructs a user.
-     * The userCounter is incremented and used as the User ID.
+     * The next ID of the ID allocator is used as the User ID.
      *
      * @param userName the userName
-     * @param password the password
+     * @param password the hashed password
      */
     public User(String userName, String password) {
-        this.userID = userCounter++;
+        this.userID = idAllocator.allocate();
         this.userName = userName;
         this.password = password;
     }
@@ -44,7 +130,11 @@ public class User {
     }
 
     public static void setUserCounter(Integer counter) {
-        userCounter = counter;
+        idAllocator.reset(counter);
+    }
+
+    static int getUserIDHighWaterMark() {
+        return idAllocator.getHighWaterMark();
     }
 
     public String getUserName() {
@@ -55,17 +145,207 @@ public class User {
         return password;
     }
 
+    void setPassword(String password) {
+        this.password = password;
+    }
+
+    /**
+     * Gets the version of the todo list. The version is incremented whenever a todo is added, updated or deleted.
+     *
+     * @return the current version of the todo list
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return snapshot.version;
+    }
+
     /**
      * Gets the list of Todos.
      *
-     * @return a list of Todos.
+     * @return an immutable snapshot of the list of Todos.
      */
     @JacksonXmlElementWrapper(localName = "todos")
     @JacksonXmlProperty(localName = "todo")
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     public List<Todo> getTodos() {
         return getTodos(null, null);
     }
 
+    /**
+     * Sets the list of Todos when the user is read from a data file which still contains the todos. The todos are
+     * only read from the data file, they are written to the todo file of the user.
+     *
+     * @param todos the list of Todos
+     */
+    @SuppressWarnings("unused")
+    private synchronized void setTodos(List<Todo> todos) {
+        rebuild(todos, snapshot.version);
+    }
+
+    /**
+     * Publishes a todo list read from a file as the current snapshot and rebuilds the category dictionary.
+     * Completed todos of data written before the day of completion was recorded are stamped with today, so they are
+     * archived some time after they were first loaded. Must be called by a synchronized writer.
+     *
+     * @param todos   the todo list read
+     * @param version the version of the todo list
+     * @return true if a todo was stamped and the list has to be written
+     */
+    private boolean rebuild(List<Todo> todos, long version) {
+        List<Todo> list = (todos != null) ? new ArrayList<>(todos) : new ArrayList<>();
+        boolean migrated = false;
+        categories.clear();
+        for (Todo todo : list) {
+            todo.setCategory(categories.acquire(todo.getCategory()));
+            if (todo.isCompleted() && todo.getCompletedOn() == null) {
+                todo.markCompleted(true);
+                migrated = true;
+            }
+        }
+        Collections.sort(list);
+        snapshot = new Snapshot(Collections.unmodifiableList(list), Collections.emptyMap(), categories.counts(), version,
+            sizeOf(list, 0));
+        return migrated;
+    }
+
+    /**
+     * Returns the current snapshot, after reading the todo list again if it was evicted.
+     *
+     * @return the current snapshot
+     */
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        return (current.todos != null) ? current : reload();
+    }
+
+    private synchronized Snapshot reload() {
+        Snapshot current = snapshot;
+        if (current.todos == null) {
+            List<Todo> todos = (cache != null) ? cache.read(this, evicted) : null;
+            // a stamped list is written with the next write of the user or on its eviction
+            persistedVersion = rebuild(todos, current.version) ? ANY_VERSION : current.version;
+            // a list read again is the most recently used, not the first to be evicted again
+            lastAccess = System.nanoTime();
+            if (cache != null) {
+                cache.loaded(this, snapshot.size);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reads the todo list again if it was evicted.
+     */
+    void load() {
+        current();
+    }
+
+    /**
+     * Evicts the todo list from memory. A todo list which has been changed since it was last persisted is written
+     * before it is dropped.
+     */
+    synchronized void evict() {
+        Snapshot current = snapshot;
+        if (current.todos == null || cache == null) {
+            return;
+        }
+        if (current.version != persistedVersion) {
+            cache.store(this, current.todos);
+            persistedVersion = current.version;
+        }
+        categories.clear();
+        archive = null;
+        snapshot = Snapshot.evicted(current.version);
+        evicted = true;
+        cache.evicted(this, current.size);
+    }
+
+    /**
+     * Hands the user over to a cache, which accounts his todo list if it is resident.
+     *
+     * @param cache the cache of the User Manager
+     */
+    synchronized void setCache(UserCache cache) {
+        this.cache = cache;
+        if (snapshot.todos != null) {
+            cache.loaded(this, snapshot.size);
+        }
+    }
+
+    /**
+     * Returns the current snapshot without reading an evicted todo list.
+     *
+     * @return the current snapshot, or null if the todo list is evicted
+     */
+    Snapshot getResidentSnapshot() {
+        Snapshot current = snapshot;
+        return (current.todos != null) ? current : null;
+    }
+
+    void setPersistedVersion(long version) {
+        if (version > persistedVersion) {
+            persistedVersion = version;
+        }
+    }
+
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    void setLastAccess(long lastAccess) {
+        this.lastAccess = lastAccess;
+    }
+
+    /**
+     * Moves the todos which were completed before a day to the archive and removes them from the todo list.
+     * The todo list is checked at most once a day.
+     *
+     * @param before the day before which the todos were completed, as epoch day
+     * @param today  the current day as epoch day
+     * @return true if todos were archived, so the todo list has to be written
+     * @throws IOException is thrown if the todos couldn't be appended to the archive, they are kept in the list then
+     */
+    boolean archiveCompleted(int before, int today) throws IOException {
+        return archivedOn != today && cache != null && archiveCompletedNow(before, today);
+    }
+
+    private synchronized boolean archiveCompletedNow(int before, int today) throws IOException {
+        if (archivedOn == today) {
+            return false;
+        }
+        archivedOn = today;
+        List<Todo> completed = new ArrayList<>();
+        for (Todo todo : current().todos) {
+            if (todo.isCompletedBefore(before)) {
+                completed.add(todo);
+            }
+        }
+        if (completed.isEmpty()) {
+            return false;
+        }
+        archive().append(completed);
+        for (Todo todo : completed) {
+            categories.release(todo.getCategory());
+        }
+        publish(completed, Collections.emptyList());
+        return true;
+    }
+
+    private synchronized TodoArchive archive() {
+        if (archive == null && cache != null) {
+            archive = cache.archiveOf(this);
+        }
+        return archive;
+    }
+
+    private static long sizeOf(List<Todo> todos, int orders) {
+        long size = 0;
+        for (Todo todo : todos) {
+            size += TODO_BYTES + ((todo.getTitle() != null) ? todo.getTitle().length() : 0);
+        }
+        return size + (long) orders * ORDER_BYTES * todos.size();
+    }
+
     /**
      * Filters the list of Todos by a category.
      *
@@ -82,17 +362,37 @@ public class User {
      * @param category the category to filter by
      * @param status   the status to filter by. Valid values are complete, incomplete, overdue and important.
      * @return a filtered list of Todos which contains all todos whose category match the specified category and/or
-     * whose status match the specified status
+     * whose status match the specified status. If neither is specified, the immutable snapshot is returned.
      */
     public List<Todo> getTodos(String category, String status) {
-        if (todos == null) {
-            return new ArrayList<>();
+        return getTodos(category, status, TodoOrder.DUE);
+    }
+
+    /**
+     * Filters the list of Todos by a category and/or a status and returns it in the specified order.
+     *
+     * @param category the category to filter by
+     * @param status   the status to filter by. Valid values are complete, incomplete, overdue and important.
+     * @param order    the order of the returned list
+     * @return a filtered list of Todos which contains all todos whose category match the specified category and/or
+     * whose status match the specified status. If neither is specified, the immutable list of the order is returned.
+     */
+    public List<Todo> getTodos(String category, String status, TodoOrder order) {
+        List<Todo> todos = ordered(order);
+        boolean hasCategory = category != null && !category.isEmpty();
+        boolean hasStatus = status != null && !status.isEmpty();
+        if (!hasCategory && !hasStatus) {
+            // an unfiltered read is recorded as well, with the filter none and the whole list as its result
+            TodoFilterEvent event = new TodoFilterEvent();
+            event.begin();
+            commitFilterEvent(event, "none", todos, todos);
+            return todos;
         }
         Predicate<Todo> filter = (t -> true);
-        if (category != null && !category.isEmpty()) {
+        if (hasCategory) {
             filter = filter.and(t -> t.getCategory() != null && t.getCategory().equals(category));
         }
-        if (status != null && !status.isEmpty()) {
+        if (hasStatus) {
             switch (status.toLowerCase()) {
                 case "complete":
                     filter = filter.and(Todo::isCompleted);
@@ -109,7 +409,75 @@ public class User {
                 default:
             }
         }
-        return todos.stream().filter(filter).collect(Collectors.toList());
+        TodoFilterEvent event = new TodoFilterEvent();
+        event.begin();
+        List<Todo> result;
+        Span span = Tracer.span("filter");
+        try {
+            result = todos.stream().filter(filter).collect(Collectors.toList());
+        } finally {
+            span.close();
+        }
+        commitFilterEvent(event, hasCategory ? (hasStatus ? "category and status" : "category") : "status", todos, result);
+        return result;
+    }
+
+    private void commitFilterEvent(TodoFilterEvent event, String filter, List<Todo> todos, List<Todo> result) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.userID = (userID != null) ? userID : -1;
+            event.filter = filter;
+            event.inputSize = todos.size();
+            event.resultSize = result.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the todo list of the current snapshot in an order.
+     *
+     * @param order the order
+     * @return the immutable list of the order
+     */
+    private List<Todo> ordered(TodoOrder order) {
+        Snapshot current = current();
+        if (order == TodoOrder.DUE) {
+            return current.todos;
+        }
+        List<Todo> todos = current.orders.get(order);
+        return (todos != null) ? todos : sort(order);
+    }
+
+    /**
+     * Sorts the todo list in an order which hasn't been requested since the list was read. The sorted list is
+     * published with a snapshot of the same version, so the writers maintain it from now on.
+     *
+     * @param order the order
+     * @return the immutable list of the order
+     */
+    private synchronized List<Todo> sort(TodoOrder order) {
+        Snapshot current = current();
+        List<Todo> todos = current.orders.get(order);
+        if (todos == null) {
+            List<Todo> sorted = new ArrayList<>(current.todos);
+            Span span = Tracer.span("sort");
+            try {
+                sorted.sort(order.comparator());
+            } finally {
+                span.close();
+            }
+            todos = Collections.unmodifiableList(sorted);
+            Map<TodoOrder, List<Todo>> orders = new EnumMap<>(TodoOrder.class);
+            orders.putAll(current.orders);
+            orders.put(order, todos);
+            long size = sizeOf(current.todos, orders.size());
+            snapshot = new Snapshot(current.todos, Collections.unmodifiableMap(orders), current.categoryCounts,
+                current.version, size);
+            if (cache != null) {
+                cache.resized(size - current.size);
+            }
+        }
+        return todos;
     }
 
     /**
@@ -157,32 +525,75 @@ public class User {
      *
      * @param todo the Todo object to add
      */
-    public void addTodo(Todo todo) {
+    public synchronized void addTodo(Todo todo) {
+        TodoMutationEvent event = new TodoMutationEvent();
+        event.begin();
+        // an evicted list is read first, as reading it rebuilds the category dictionary
+        current();
         todo.setUserID(userID);
-        if (todos == null) {
-            todos = new ArrayList<>();
+        todo.setCategory(categories.acquire(todo.getCategory()));
+        publish(Collections.emptyList(), Collections.singletonList(todo));
+        commitMutationEvent(event, "add", todo);
+    }
+
+    /**
+     * Adds several Todos to the list of Todos at once. The list is copied and published only once, so adding a batch
+     * costs about as much as adding a single todo.
+     *
+     * @param batch the Todo objects to add
+     */
+    public synchronized void addTodos(List<Todo> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        current();
+        for (Todo todo : batch) {
+            todo.setUserID(userID);
+            todo.setCategory(categories.acquire(todo.getCategory()));
         }
-        todos.add(todo);
-        Collections.sort(todos);
+        publish(Collections.emptyList(), batch);
     }
 
     /**
-     * Updates a Todo
+     * Updates a Todo. The todo with the same ID is replaced by a copy of the specified todo, so the todo of the
+     * current snapshot is not changed.
      *
      * @param todo the Todo object to update in the list
      */
     public void updateTodo(Todo todo) {
-        for (Todo tempTodo : todos) {
-            if (tempTodo.getTodoID().equals(todo.getTodoID())) {
-                tempTodo.setCategory(todo.getCategory());
-                tempTodo.setCompleted(todo.isCompleted());
-                tempTodo.setDueDate(todo.getDueDate());
-                tempTodo.setImportant(todo.isImportant());
-                tempTodo.setTitle(todo.getTitle());
-                break;
-            }
+        updateTodo(todo, ANY_VERSION);
+    }
+
+    /**
+     * Updates a Todo if it has not been changed since the expected version was read. The todo with the same ID is
+     * replaced by a copy of the specified todo with the next version.
+     *
+     * @param todo            the Todo object to update in the list
+     * @param expectedVersion the version the change is based on, or ANY_VERSION to update any version
+     * @return true if the todo was updated, false if it was changed or deleted in the meantime
+     */
+    public synchronized boolean updateTodo(Todo todo, long expectedVersion) {
+        TodoMutationEvent event = new TodoMutationEvent();
+        event.begin();
+        List<Todo> current = current().todos;
+        int index = indexOf(current, todo.getTodoID());
+        // a todo which doesn't exist is not updated, and the version of the list stays the same
+        if (index < 0 || !matches(current, index, expectedVersion)) {
+            return false;
+        }
+        Todo previous = current.get(index);
+        Todo copy = new Todo(todo);
+        copy.setUserID(userID);
+        if (Objects.equals(copy.getCategory(), previous.getCategory())) {
+            copy.setCategory(previous.getCategory());
+        } else {
+            copy.setCategory(categories.acquire(copy.getCategory()));
+            categories.release(previous.getCategory());
         }
-        Collections.sort(todos);
+        copy.setVersion(previous.getVersion() + 1);
+        publish(Collections.singletonList(previous), Collections.singletonList(copy));
+        commitMutationEvent(event, "update", todo);
+        return true;
     }
 
     /**
@@ -191,36 +602,247 @@ public class User {
      * @param todo the Todo object to remove from the list.
      */
     public void deleteTodo(Todo todo) {
-        Iterator<Todo> iterator = todos.iterator();
-        while (iterator.hasNext()) {
-            Todo tempTodo = iterator.next();
-            if (tempTodo.getTodoID().equals(todo.getTodoID())) {
-                iterator.remove();
-                break;
+        deleteTodo(todo, ANY_VERSION);
+    }
+
+    /**
+     * Deletes a Todo from the list if it has not been changed since the expected version was read.
+     *
+     * @param todo            the Todo object to remove from the list.
+     * @param expectedVersion the version the deletion is based on, or ANY_VERSION to delete any version
+     * @return true if the todo was deleted, false if it was changed or deleted in the meantime
+     */
+    public synchronized boolean deleteTodo(Todo todo, long expectedVersion) {
+        TodoMutationEvent event = new TodoMutationEvent();
+        event.begin();
+        List<Todo> current = current().todos;
+        int index = indexOf(current, todo.getTodoID());
+        if (index < 0 || !matches(current, index, expectedVersion)) {
+            return false;
+        }
+        Todo removed = current.get(index);
+        categories.release(removed.getCategory());
+        publish(Collections.singletonList(removed), Collections.emptyList());
+        commitMutationEvent(event, "delete", todo);
+        return true;
+    }
+
+    private static int indexOf(List<Todo> todos, int todoID) {
+        for (int i = 0; i < todos.size(); i++) {
+            if (todos.get(i).getTodoID() == todoID) {
+                return i;
             }
         }
-        Collections.sort(todos);
+        return -1;
+    }
+
+    private static boolean matches(List<Todo> todos, int index, long expectedVersion) {
+        return expectedVersion == ANY_VERSION || todos.get(index).getVersion() == expectedVersion;
     }
 
     /**
-     * Gets a todo from the list.
+     * Applies a change to the todo list and to each sorted order of the current snapshot and publishes them as the
+     * next snapshot. Must be called by a synchronized writer, after the todo list has been read.
+     *
+     * @param removed the todos of the current snapshot to remove
+     * @param added   the todos to add
+     */
+    private void publish(List<Todo> removed, List<Todo> added) {
+        Snapshot previous = snapshot;
+        Collection<Todo> skipped = (removed.size() > 1) ? new HashSet<>(removed) : removed;
+        List<Todo> todos;
+        Map<TodoOrder, List<Todo>> orders = Collections.emptyMap();
+        Span span = Tracer.span("sort");
+        try {
+            todos = merge(previous.todos, skipped, added, TodoOrder.DUE);
+            if (!previous.orders.isEmpty()) {
+                orders = new EnumMap<>(TodoOrder.class);
+                for (Map.Entry<TodoOrder, List<Todo>> entry : previous.orders.entrySet()) {
+                    orders.put(entry.getKey(), merge(entry.getValue(), skipped, added, entry.getKey()));
+                }
+                orders = Collections.unmodifiableMap(orders);
+            }
+        } finally {
+            span.close();
+        }
+        long size = sizeOf(todos, orders.size());
+        snapshot = new Snapshot(todos, orders, categories.counts(), previous.version + 1, size);
+        if (cache != null) {
+            cache.resized(size - previous.size);
+        }
+    }
+
+    /**
+     * Merges added todos into a sorted list and leaves out removed todos. Only the added todos are sorted, so a
+     * change costs one pass over the list instead of sorting the whole list again.
+     *
+     * @param sorted  the list sorted in the order
+     * @param skipped the todos to leave out
+     * @param added   the todos to add
+     * @param order   the order of the list
+     * @return the merged immutable list
+     */
+    private static List<Todo> merge(List<Todo> sorted, Collection<Todo> skipped, List<Todo> added, TodoOrder order) {
+        Comparator<Todo> comparator = order.comparator();
+        List<Todo> insert = added;
+        if (added.size() > 1) {
+            insert = new ArrayList<>(added);
+            insert.sort(comparator);
+        }
+        List<Todo> merged = new ArrayList<>(sorted.size() - skipped.size() + added.size());
+        int next = 0;
+        for (Todo todo : sorted) {
+            if (!skipped.isEmpty() && skipped.contains(todo)) {
+                continue;
+            }
+            while (next < insert.size() && comparator.compare(insert.get(next), todo) < 0) {
+                merged.add(insert.get(next++));
+            }
+            merged.add(todo);
+        }
+        while (next < insert.size()) {
+            merged.add(insert.get(next++));
+        }
+        return Collections.unmodifiableList(merged);
+    }
+
+    private void commitMutationEvent(TodoMutationEvent event, String operation, Todo todo) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.userID = (userID != null) ? userID : -1;
+            event.todoID = todo.getTodoID();
+            event.listSize = snapshot.todos.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets a todo from the list. The todo belongs to a snapshot and must not be changed; to change it, update a copy.
      *
      * @param todoID the ID of the todo.
      * @return a Todo object
      */
     public Todo getTodo(Integer todoID) {
-        Optional<Todo> todo = todos.stream().filter(t -> t.getTodoID().equals(todoID)).findFirst();
-        return todo.orElse(null);
+        if (todoID == null) {
+            return null;
+        }
+        int id = todoID;
+        for (Todo todo : current().todos) {
+            if (todo.getTodoID() == id) {
+                return todo;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the archived todos, i.e. the todos which were moved to the archive some time after their completion.
+     * They are read from the archive on every call.
+     *
+     * @return a sorted list of the archived todos
+     */
+    @JsonIgnore
+    public List<Todo> getArchivedTodos() {
+        return getArchivedTodos(null);
+    }
+
+    /**
+     * Filters the archived todos by a category.
+     *
+     * @param category the category to filter by
+     * @return a sorted list of the archived todos whose category match the specified category
+     */
+    public List<Todo> getArchivedTodos(String category) {
+        return getArchivedTodos(category, TodoOrder.DUE);
+    }
+
+    /**
+     * Filters the archived todos by a category and returns them in the specified order. The archived todos are
+     * sorted on every call, as they are read from the archive on every call.
+     *
+     * @param category the category to filter by
+     * @param order    the order of the returned list
+     * @return a list of the archived todos whose category match the specified category
+     */
+    public List<Todo> getArchivedTodos(String category, TodoOrder order) {
+        TodoArchive archive = archive();
+        if (archive == null) {
+            return Collections.emptyList();
+        }
+        List<Todo> read;
+        try {
+            read = archive.read();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        if (read.isEmpty()) {
+            return read;
+        }
+        // a todo is still in the list if the list couldn't be written after archiving, and archived again later
+        Set<Integer> inList = new HashSet<>();
+        for (Todo todo : current().todos) {
+            inList.add(todo.getTodoID());
+        }
+        boolean hasCategory = category != null && !category.isEmpty();
+        Map<Integer, Todo> archived = new LinkedHashMap<>();
+        for (Todo todo : read) {
+            if (!inList.contains(todo.getTodoID()) && (!hasCategory || category.equals(todo.getCategory()))) {
+                archived.put(todo.getTodoID(), todo);
+            }
+        }
+        List<Todo> todos = new ArrayList<>(archived.values());
+        todos.sort(order.comparator());
+        return todos;
+    }
+
+    /**
+     * Gets an archived todo.
+     *
+     * @param todoID the ID of the todo
+     * @return a Todo object, or null if the todo is not archived
+     */
+    public Todo getArchivedTodo(Integer todoID) {
+        TodoArchive archive = archive();
+        // a todo which is still in the list is not archived, see getArchivedTodos
+        if (todoID == null || archive == null || getTodo(todoID) != null) {
+            return null;
+        }
+        try {
+            return archive.find(todoID);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
     }
 
     /**
      * Returns a set with all distinct categories.
      *
-     * @return a set with all distinct categories
+     * @return an immutable set with all distinct categories
      */
     @JsonIgnore
     public Set<String> getDistinctCategories() {
-        return (todos != null) ? todos.stream().map(Todo::getCategory).filter(x -> !x.isEmpty()).collect(Collectors.toSet()) : Collections.emptySet();
+        return current().categoryCounts.keySet();
+    }
+
+    /**
+     * Returns the number of todos per category.
+     *
+     * @return an immutable map of all distinct categories to the number of todos using them
+     */
+    @JsonIgnore
+    public Map<String, Integer> getCategoryCounts() {
+        return current().categoryCounts;
+    }
+
+    /**
+     * Returns the number of todos of a category.
+     *
+     * @param category the category
+     * @return the number of todos of the category, or 0 if no todo uses it
+     */
+    public int getCategoryCount(String category) {
+        return current().categoryCounts.getOrDefault(category, 0);
     }
 
     @Override
@@ -228,7 +850,7 @@ public class User {
         return "User{" +
             "userID='" + userID + '\'' +
             ", userName='" + userName + '\'' +
-            ", todos=" + todos +
+            ", todos=" + snapshot.todos +
             '}';
     }
 
@@ -264,6 +886,6 @@ public class User {
     @SuppressWarnings("unused")
     @JsonIgnore
     public boolean hasCompletedTodos() {
-        return todos != null && todos.stream().anyMatch(Todo::isCompleted);
+        return current().todos.stream().anyMatch(Todo::isCompleted);
     }
 }
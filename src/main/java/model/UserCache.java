@@ -0,0 +1,300 @@
+package model;
+
+import model.helper.XmlHelper;
+import monitoring.Histogram;
+import monitoring.MetricsRegistry;
+
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the todo lists of the active users in memory within a memory budget.
+ * <p>
+ * The todos of each user are persisted in their own file WEB-INF/xml/todos/userID.xml. When the estimated size of
+ * the resident todo lists exceeds the budget, the todo lists of the least recently used users are evicted: a list
+ * which has not been persisted yet is written to its file, then it is dropped from memory. The user itself stays
+ * registered, and his todo list is read again from the file as soon as he is looked up or his todos are accessed.
+ * So the heap used by the todos is proportional to the active users rather than to all users.
+ * <p>
+ * When a user is accessed for the first time on a day, his todos completed more than archiveAfterDays days ago are
+ * moved to his archive WEB-INF/archive/userID.dat.
+ * <p>
+ * Eviction and reloading of a user are synchronized on the user, like the mutations of his todo list, so a mutation
+ * is never lost by an eviction. The resident size is accounted while holding the lock of the user as well.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+class UserCache {
+    private static final Logger LOGGER = Logger.getLogger(UserCache.class.getName());
+    private static final String TODO_DIRECTORY = "WEB-INF/xml/todos";
+    private static final String ARCHIVE_DIRECTORY = "WEB-INF/archive";
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getInstance();
+    private static final LongAdder evictions = METRICS.counter("todoapp_user_evictions_total", "Number of todo lists evicted from memory.");
+    private static final LongAdder reloads = METRICS.counter("todoapp_user_reloads_total", "Number of todo lists read again after they were evicted.");
+    private static final Histogram reloadTime = METRICS.timer("todoapp_user_reload_duration_seconds", "Time to read an evicted todo list.");
+
+    private final ServletContext servletContext;
+    private final long budget;
+    private final int archiveAfterDays;
+    private final Set<User> residents = ConcurrentHashMap.newKeySet();
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private volatile int today;
+    private volatile long tomorrow;
+
+    /**
+     * Constructs a cache.
+     *
+     * @param servletContext the context of the web application
+     * @param budget           the maximum estimated size of the resident todo lists in bytes, 0 for no limit
+     * @param archiveAfterDays the number of days after which completed todos are archived, 0 to never archive them
+     */
+    UserCache(ServletContext servletContext, long budget, int archiveAfterDays) {
+        this.servletContext = servletContext;
+        this.budget = budget;
+        this.archiveAfterDays = archiveAfterDays;
+    }
+
+    /**
+     * Adds a user to the cache. Users read from a partition file are not resident until their todos are accessed.
+     *
+     * @param user the user to add
+     */
+    void add(User user) {
+        user.setCache(this);
+    }
+
+    /**
+     * Records an access to a user. His todo list is read again if it was evicted, his todos completed long ago are
+     * archived, and the least recently used todo lists are evicted if the budget is exceeded.
+     *
+     * @param user the accessed user
+     */
+    void touch(User user) {
+        user.setLastAccess(System.nanoTime());
+        user.load();
+        if (archiveAfterDays > 0) {
+            archive(user);
+        }
+        if (budget > 0 && residentBytes.get() > budget) {
+            evict(user);
+        }
+    }
+
+    /**
+     * Evicts the least recently used todo lists until their size has fallen below 90% of the budget, so not every
+     * access of a new user requires an eviction. Only one thread evicts at a time, the others skip the eviction.
+     *
+     * @param keep the user which was just accessed and is not evicted
+     */
+    private void evict(User keep) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long target = budget / 10 * 9;
+            List<Candidate> candidates = new ArrayList<>(residents.size());
+            for (User user : residents) {
+                candidates.add(new Candidate(user));
+            }
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+            for (Candidate candidate : candidates) {
+                if (residentBytes.get() <= target) {
+                    break;
+                }
+                if (candidate.user != keep) {
+                    candidate.user.evict();
+                }
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.warning(() -> " - - - - Todos could not be evicted: " + ex + " - - - - ");
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void archive(User user) {
+        int today = today();
+        try {
+            if (user.archiveCompleted(today - archiveAfterDays, today)) {
+                write(user);
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warning(() -> " - - - - Todos of user " + user.getUserID() + " could not be archived: " + ex + " - - - - ");
+        }
+    }
+
+    /**
+     * Returns the current day. It is determined only once a day, as every lookup of a user requires it.
+     *
+     * @return the current day as epoch day
+     */
+    private int today() {
+        if (System.currentTimeMillis() >= tomorrow) {
+            LocalDate date = LocalDate.now();
+            today = Math.toIntExact(date.toEpochDay());
+            tomorrow = date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        return today;
+    }
+
+    /**
+     * A user with the time of his last access, which doesn't change while the candidates are sorted.
+     */
+    private static final class Candidate {
+        private final User user;
+        private final long lastAccess;
+
+        private Candidate(User user) {
+            this.user = user;
+            this.lastAccess = user.getLastAccess();
+        }
+    }
+
+    /**
+     * Reads the todos of a user from his file. A user without a file has no todos. Only the reading of an evicted
+     * todo list is measured as a reload, not its first reading.
+     *
+     * @param user    the user
+     * @param evicted true if the todo list was evicted before
+     * @return the todos of the user
+     */
+    List<Todo> read(User user, boolean evicted) {
+        long start = System.nanoTime();
+        String file = todoFile(user);
+        List<Todo> todos = exists(file)
+            ? XmlHelper.readXmlData(servletContext, file, UserTodos.class).getTodos()
+            : new ArrayList<>();
+        if (evicted) {
+            reloadTime.record(System.nanoTime() - start);
+            reloads.increment();
+        }
+        return todos;
+    }
+
+    /**
+     * Returns the highest todo ID in the file of a user. The file is scanned without reading the todo list into
+     * memory, so the budget is not exceeded.
+     *
+     * @param user the user
+     * @return the highest todo ID, or 0 if the user has no file
+     */
+    int readHighestTodoID(User user) {
+        String file = todoFile(user);
+        return exists(file) ? XmlHelper.readHighestValue(servletContext, file, "todoID") : 0;
+    }
+
+    private boolean exists(String file) {
+        String path = servletContext.getRealPath(file);
+        return path != null && Files.exists(Paths.get(path));
+    }
+
+    /**
+     * Writes the todo list which is about to be evicted. Must be called while holding the lock of the user.
+     *
+     * @param user  the user
+     * @param todos the todo list of the user
+     */
+    void store(User user, List<Todo> todos) {
+        XmlHelper.writeXmlData(new UserTodos(todos), servletContext, todoFile(user));
+    }
+
+    /**
+     * Writes the todo list of a user if it is resident. An evicted todo list has already been written on its eviction.
+     *
+     * @param user the user
+     */
+    void write(User user) {
+        long[] version = {User.ANY_VERSION};
+        boolean written = XmlHelper.writeXmlData(() -> {
+            User.Snapshot snapshot = user.getResidentSnapshot();
+            if (snapshot == null) {
+                return null;
+            }
+            version[0] = snapshot.version;
+            return new UserTodos(snapshot.todos);
+        }, servletContext, todoFile(user));
+        if (written) {
+            user.setPersistedVersion(version[0]);
+        }
+    }
+
+    /**
+     * Accounts a todo list which has become resident. Must be called while holding the lock of the user.
+     *
+     * @param user the user
+     * @param size the estimated size of his todo list
+     */
+    void loaded(User user, long size) {
+        residents.add(user);
+        residentBytes.addAndGet(size);
+    }
+
+    /**
+     * Accounts the changed size of a resident todo list. Must be called while holding the lock of the user.
+     *
+     * @param delta the change of the estimated size
+     */
+    void resized(long delta) {
+        residentBytes.addAndGet(delta);
+    }
+
+    /**
+     * Accounts an evicted todo list. Must be called while holding the lock of the user.
+     *
+     * @param user the user
+     * @param size the estimated size of the evicted todo list
+     */
+    void evicted(User user, long size) {
+        residents.remove(user);
+        residentBytes.addAndGet(-size);
+        evictions.increment();
+    }
+
+    /**
+     * Returns the users whose todo lists are resident.
+     *
+     * @return the resident users
+     */
+    Set<User> getResidents() {
+        return residents;
+    }
+
+    long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Creates the archive of a user.
+     *
+     * @param user the user
+     * @return the archive of the user
+     */
+    TodoArchive archiveOf(User user) {
+        String file = ARCHIVE_DIRECTORY + "/" + user.getUserID() + ".dat";
+        return new TodoArchive(Paths.get(servletContext.getRealPath(file)), user.getUserID());
+    }
+
+    private static String todoFile(User user) {
+        return TODO_DIRECTORY + "/" + user.getUserID() + ".xml";
+    }
+}
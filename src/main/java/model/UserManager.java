@@ -1,48 +1,246 @@
 package model;
 
-import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
-import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
-import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+import model.helper.ConfigHelper;
+import model.helper.PasswordHelper;
 import model.helper.XmlHelper;
+import monitoring.MetricsRegistry;
+import monitoring.Span;
+import monitoring.Tracer;
 
 import javax.servlet.ServletContext;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * The User Manager is responsible for the registration and authentication of a user.
+ * <p>
+ * The users are split into partitions by the hash of their user ID. Each partition has its own index and is persisted
+ * in its own file WEB-INF/xml/Data-n.xml with its own lock, so operations on users of different partitions never
+ * contend and a mutation only writes the partition of the user. The user names are indexed in a concurrent map, so
+ * registration and authentication don't need a lock either. The partitions are loaded and written in parallel.
+ * The number of partitions is configured with the context parameter dataPartitions. If the data has been written with
+ * a different number of partitions or as a single Data.xml, it is distributed to the partitions and written again;
+ * the Data.xml is then renamed to Data.xml.migrated.
+ * <p>
+ * The todos of each user are persisted in their own file and kept in memory by a cache only while the user is active.
+ * The memory budget of the cache is configured with the context parameter todoCacheKilobytes. A mutation only writes
+ * the todo file of the user and, if the user was registered since, his partition. Completed todos are moved to the
+ * archive of the user after the number of days configured with the context parameter archiveAfterDays.
+ * <p>
+ * If the data exists but cannot be read, the User Manager starts without users and refuses to write, so the data
+ * files are not overwritten with an empty store.
  *
  * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
  * @version 1.0
  */
-@JacksonXmlRootElement(localName = "root")
 public class UserManager {
+    public static final int DEFAULT_PARTITIONS = 8;
+    public static final long DEFAULT_TODO_CACHE_KILOBYTES = 64 * 1024;
+    public static final int DEFAULT_ARCHIVE_AFTER_DAYS = 30;
 
-    private static final Set<User> users = new HashSet<>();
+    private static final Logger LOGGER = Logger.getLogger(UserManager.class.getName());
+    private static final String DATA_DIRECTORY = "WEB-INF/xml";
+    private static final String DATA_FILE = DATA_DIRECTORY + "/Data.xml";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    private static final Pattern PARTITION_FILE = Pattern.compile("Data-(\\d+)\\.xml");
 
-    private static UserManager instance;
+    private static volatile UserManager instance;
 
-    private UserManager() {
+    private final UserPartition[] partitions;
+    private final ConcurrentHashMap<String, User> usersByName = new ConcurrentHashMap<>();
+    private final UserCache cache;
+    // true if the data couldn't be read, so writing would overwrite it
+    private final boolean readOnly;
+    // the todo ID high-water mark of the last written partition, the one loaded is the highest of all partitions
+    private final AtomicInteger writtenTodoIDHighWaterMark = new AtomicInteger();
+    // false while writing the data after mutations is suspended, see setWriting
+    private volatile boolean writing = true;
+
+    private UserManager(int partitionCount, UserCache cache, boolean readOnly) {
+        this.cache = cache;
+        this.readOnly = readOnly;
+        partitions = new UserPartition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new UserPartition();
+        }
     }
 
     /**
-     * Instantiates a UserManager as a singleton and sets the static counters
-     * of the Todo and User classes to the highest values.
+     * Instantiates a UserManager as a singleton and sets the ID allocators of the Todo and User classes
+     * to the persisted high-water marks. If the data contains no high-water marks, they are determined
+     * from the highest IDs in use.
+     * Passwords still stored in plaintext are hashed and written back.
+     * The data is loaded only once, even if several threads request the instance at the same time.
      *
      * @param servletContext the context of a ServletContext
      * @return an instance of UserManager
      */
     public static UserManager getInstance(ServletContext servletContext) {
-        try {
+        UserManager userManager = UserManager.instance;
+        if (userManager != null) {
+            return userManager;
+        }
+        synchronized (UserManager.class) {
             if (UserManager.instance == null) {
-                UserManager.instance = loadData(servletContext);
-                setCounters();
+                int partitionCount = (int) Math.max(1, ConfigHelper.getLong(servletContext, "dataPartitions", DEFAULT_PARTITIONS));
+                long budget = Math.max(0, ConfigHelper.getLong(servletContext, "todoCacheKilobytes", DEFAULT_TODO_CACHE_KILOBYTES)) * 1024;
+                int archiveAfterDays = (int) Math.max(0, ConfigHelper.getLong(servletContext, "archiveAfterDays", DEFAULT_ARCHIVE_AFTER_DAYS));
+                try {
+                    long start = System.nanoTime();
+                    UserManager loaded = new UserManager(partitionCount, new UserCache(servletContext, budget, archiveAfterDays), false);
+                    boolean repartitioned = loaded.loadData(servletContext);
+                    boolean migrated = loaded.migratePasswords();
+                    if (repartitioned || migrated) {
+                        loaded.writeData(servletContext);
+                        loaded.deleteUnusedFiles(servletContext);
+                    }
+                    MetricsRegistry.getInstance()
+                        .timer("todoapp_data_load_duration_seconds", "Time to load the data including ID recovery and password migration.")
+                        .record(System.nanoTime() - start);
+                    UserManager.instance = loaded;
+                } catch (Exception e) {
+                    LOGGER.severe(() -> " - - - - Data could not be loaded, no data will be written: " + e + " - - - - ");
+                    UserManager.instance = new UserManager(partitionCount, new UserCache(servletContext, budget, archiveAfterDays), true);
+                }
+                UserManager.instance.registerGauges();
             }
             return UserManager.instance;
-        } catch (Exception e) {
-            UserManager.instance = new UserManager();
-            return UserManager.instance;
+        }
+    }
+
+    /**
+     * Registers the gauges for the number of users and todos, the heap used per todo and the todo cache.
+     * Only the resident todos are counted, so the gauges don't read evicted todo lists.
+     */
+    private void registerGauges() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("todoapp_users", "Number of registered users.", usersByName::size);
+        metrics.gauge("todoapp_resident_users", "Number of users whose todos are in memory.", () -> cache.getResidents().size());
+        metrics.gauge("todoapp_resident_todos", "Number of todos in memory.", this::countResidentTodos);
+        metrics.gauge("todoapp_resident_todo_bytes", "Estimated size of the todos in memory.", cache::getResidentBytes);
+        metrics.gauge("todoapp_todo_cache_budget_bytes", "Memory budget of the todos, 0 if unlimited.", cache::getBudget);
+        metrics.gauge("todoapp_data_partitions", "Number of partitions of the users.", () -> partitions.length);
+        metrics.gauge("todoapp_heap_bytes_per_todo", "Used heap divided by the number of todos in memory.", () -> {
+            Runtime runtime = Runtime.getRuntime();
+            return (double) (runtime.totalMemory() - runtime.freeMemory()) / Math.max(1, countResidentTodos());
+        });
+    }
+
+    private long countResidentTodos() {
+        long count = 0;
+        for (User user : cache.getResidents()) {
+            User.Snapshot snapshot = user.getResidentSnapshot();
+            count += (snapshot != null) ? snapshot.todos.size() : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the partition files in parallel and distributes their users to the partitions. If there are no partition
+     * files, the single Data.xml is read instead. Without any data file, the User Manager starts without users.
+     *
+     * @param servletContext the context of a ServletContext
+     * @return true if the data has to be written again, because it was not stored in the current partitions or it
+     * still contains the todos of the users
+     * @throws IOException is thrown if the data couldn't be read
+     */
+    private boolean loadData(ServletContext servletContext) throws IOException {
+        List<String> files = findPartitionFiles(servletContext);
+        boolean repartitioned = files.size() != partitions.length;
+        if (files.isEmpty()) {
+            String path = servletContext.getRealPath(DATA_FILE);
+            if (path == null || !Files.exists(Paths.get(path))) {
+                setCounters();
+                return false;
+            }
+            files.add(DATA_FILE);
+        }
+        List<Callable<UserPartition>> tasks = new ArrayList<>();
+        for (String file : files) {
+            tasks.add(() -> XmlHelper.readXmlData(servletContext, file));
+        }
+        Integer userIDHighWaterMark = 0;
+        Integer todoIDHighWaterMark = 0;
+        List<UserPartition> results = invokeAll(tasks);
+        for (int i = 0; i < results.size(); i++) {
+            UserPartition loaded = results.get(i);
+            for (User user : loaded.getUsers()) {
+                int index = partitionOf(user.getUserID());
+                // a user stored in another file than the one of his partition requires writing all partitions
+                repartitioned |= !files.get(i).equals(partitionFile(index));
+                partitions[index].add(user);
+                usersByName.put(user.getUserName().toLowerCase(Locale.ROOT), user);
+                // todos read from the partition file have to be written to the todo file of the user
+                repartitioned |= user.getResidentSnapshot() != null;
+                cache.add(user);
+            }
+            if (userIDHighWaterMark == null || loaded.getLoadedUserIDHighWaterMark() == null
+                || loaded.getLoadedTodoIDHighWaterMark() == null) {
+                userIDHighWaterMark = null;
+            } else {
+                userIDHighWaterMark = Math.max(userIDHighWaterMark, loaded.getLoadedUserIDHighWaterMark());
+                todoIDHighWaterMark = Math.max(todoIDHighWaterMark, loaded.getLoadedTodoIDHighWaterMark());
+            }
+        }
+        if (userIDHighWaterMark != null) {
+            User.setUserCounter(userIDHighWaterMark);
+            Todo.setTodoCounter(todoIDHighWaterMark);
+        } else {
+            setCounters();
+        }
+        writtenTodoIDHighWaterMark.set(Todo.getTodoIDHighWaterMark());
+        return repartitioned;
+    }
+
+    private static List<String> findPartitionFiles(ServletContext servletContext) throws IOException {
+        List<String> files = new ArrayList<>();
+        String directory = servletContext.getRealPath(DATA_DIRECTORY);
+        if (directory == null || !Files.isDirectory(Paths.get(directory))) {
+            return files;
+        }
+        try (Stream<Path> paths = Files.list(Paths.get(directory))) {
+            paths.map(path -> path.getFileName().toString())
+                .filter(name -> PARTITION_FILE.matcher(name).matches())
+                .sorted()
+                .forEach(name -> files.add(DATA_DIRECTORY + "/" + name));
+        }
+        return files;
+    }
+
+    /**
+     * Deletes the partition files which are not used with the current number of partitions. A single Data.xml, which
+     * has been distributed to the partitions, is renamed to Data.xml.migrated, so it is kept as a backup but neither
+     * read again nor mistaken for the current data.
+     */
+    private void deleteUnusedFiles(ServletContext servletContext) throws IOException {
+        for (String file : findPartitionFiles(servletContext)) {
+            Matcher matcher = PARTITION_FILE.matcher(file.substring(DATA_DIRECTORY.length() + 1));
+            if (matcher.matches() && Integer.parseInt(matcher.group(1)) >= partitions.length) {
+                Files.deleteIfExists(Paths.get(servletContext.getRealPath(file)));
+            }
+        }
+        String path = servletContext.getRealPath(DATA_FILE);
+        if (path != null && Files.exists(Paths.get(path))) {
+            Path dataFile = Paths.get(path);
+            Files.move(dataFile, dataFile.resolveSibling(dataFile.getFileName() + MIGRATED_SUFFIX),
+                StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.info(() -> " - - - - Data.xml distributed to the partitions and renamed - - - - ");
         }
     }
 
@@ -50,19 +248,25 @@ public class UserManager {
      * Sets the static counters of the Todo and User classes to the highest values
      * When loading the Data.xml, the highest assigned todoID and userID are determined and stored in the static counters.
      * When adding new todos, the todoCounter is increased. This way it can be ensured that each todo and user
-     * have unique ID's.
+     * have unique ID's. The todo files are scanned for the highest todoID without making the users resident.
      */
-    private static void setCounters() {
+    private void setCounters() {
         Integer highestUserID = 0;
         Integer highestTodoID = 0;
 
-        for (User user : UserManager.instance.getUsers()) {
+        for (User user : getUsers()) {
             if (highestUserID < user.getUserID()) {
                 highestUserID = user.getUserID();
             }
-            for (Todo todo : user.getTodos()) {
-                if (highestTodoID < todo.getTodoID()) {
-                    highestTodoID = todo.getTodoID();
+            // the todo files of users who are not resident are scanned without loading them
+            User.Snapshot snapshot = user.getResidentSnapshot();
+            if (snapshot == null) {
+                highestTodoID = Math.max(highestTodoID, cache.readHighestTodoID(user));
+            } else {
+                for (Todo todo : snapshot.todos) {
+                    if (highestTodoID < todo.getTodoID()) {
+                        highestTodoID = todo.getTodoID();
+                    }
                 }
             }
         }
@@ -70,24 +274,56 @@ public class UserManager {
         Todo.setTodoCounter(++highestTodoID);
     }
 
+    /**
+     * Hashes all passwords which are still stored in plaintext.
+     *
+     * @return true if any password was migrated and the data has to be written
+     */
+    private boolean migratePasswords() {
+        boolean migrated = false;
+        for (User user : getUsers()) {
+            if (!PasswordHelper.isHashed(user.getPassword())) {
+                user.setPassword(PasswordHelper.hash(user.getPassword()));
+                migrated = true;
+            }
+        }
+        return migrated;
+    }
+
     /**
      * Registers a new user.
+     * The password is stored as a salted hash.
      *
      * @param userName the userName
      * @param password the password
-     * @throws UserException if userName is already registered
+     * @return the registered user
+     * @throws UserException if userName is already registered or the data couldn't be loaded
      */
-    public void register(String userName, String password) throws UserException {
-        if (isNotRegistered(userName)) {
-            User newUser = new User(userName, password);
-            users.add(newUser);
-        } else {
+    public User register(String userName, String password) throws UserException {
+        if (readOnly) {
+            throw new UserException("Registration is not possible, the data could not be loaded!");
+        }
+        String key = userName.toLowerCase(Locale.ROOT);
+        if (usersByName.containsKey(key)) {
+            throw new UserException("Username is not unique!");
+        }
+        User newUser = new User(userName, PasswordHelper.hash(password));
+        UserPartition partition = partitions[partitionOf(newUser.getUserID())];
+        // the user is added to his partition while the name is locked, so a user who can be authenticated is found
+        User registered = usersByName.computeIfAbsent(key, name -> {
+            cache.add(newUser);
+            partition.add(newUser);
+            return newUser;
+        });
+        if (registered != newUser) {
             throw new UserException("Username is not unique!");
         }
+        partition.markChanged();
+        return newUser;
     }
 
     /**
-     * Authenticates a user.
+     * Authenticates a user. The todos of the user are read again if they were evicted.
      *
      * @param userName the userName
      * @param password the password
@@ -95,65 +331,187 @@ public class UserManager {
      * @throws UserException if the user does not exist or the passwords did not match
      */
     public User authenticate(String userName, String password) throws UserException {
-        if (isNotRegistered(userName)) {
+        User user = usersByName.get(userName.toLowerCase(Locale.ROOT));
+        if (user == null) {
             throw new UserException("User does not exist!");
-        } else {
-            for (User thisUser : users) {
-                if (thisUser.getUserName().equalsIgnoreCase(userName) && thisUser.getPassword().equals(password)) {
-                    return thisUser;
-                }
-            }
+        } else if (!PasswordHelper.verify(password, user.getPassword())) {
             throw new UserException("Password does not match!");
         }
+        cache.touch(user);
+        return user;
     }
 
     /**
-     * Indicates whether a userName is already registered.
+     * Returns all registered users.
      *
-     * @param userName the userName to check
-     * @return true if userName is not yet registered, false otherwise
+     * @return a list with the users of all partitions
      */
-    private boolean isNotRegistered(String userName) {
-        for (User user : users) {
-            if (user.getUserName().equalsIgnoreCase(userName)) {
-                return false;
+    public List<User> getUsers() {
+        List<User> users = new ArrayList<>(usersByName.size());
+        for (UserPartition partition : partitions) {
+            users.addAll(partition.getUsers());
+        }
+        return users;
+    }
+
+    /**
+     * Returns the User associated with userID. The todos of the user are read again if they were evicted.
+     *
+     * @param userID id of the user to return
+     * @return a User object
+     */
+    public User getUser(int userID) {
+        Span span = Tracer.span("user lookup");
+        try {
+            User user = partitions[partitionOf(userID)].getUser(userID);
+            if (user != null) {
+                cache.touch(user);
             }
+            return user;
+        } finally {
+            span.close();
         }
-        return true;
     }
 
     /**
-     * Returns all registered users.
+     * Returns the managed user of a web session. The lookup records the access like {@link #getUser(int)}, so the
+     * todos of a user who is active in the browser are not evicted first and the budget is checked after they were
+     * read again.
      *
-     * @return a set with all registered users
+     * @param sessionUser the user stored in the session, or null
+     * @return the managed user, or null if the session has no user
      */
-    @JacksonXmlElementWrapper(localName = "users")
-    @JacksonXmlProperty(localName = "user")
-    public Set<User> getUsers() {
-        return users;
+    public User getSessionUser(User sessionUser) {
+        return (sessionUser != null) ? getUser(sessionUser.getUserID()) : null;
     }
 
     /**
-     * Returns the User associated with userID
+     * Returns the number of partitions.
      *
-     * @param userID id of the user to return
-     * @return a User object
+     * @return the number of partitions
      */
-    public User getUser(int userID) {
-        Optional<User> user = users.stream()
-            .filter(u -> u.getUserID() == userID)
-            .findFirst();
-        return user.orElse(null);
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    private int partitionOf(int userID) {
+        return Math.floorMod(Integer.hashCode(userID), partitions.length);
+    }
+
+    private static String partitionFile(int index) {
+        return DATA_DIRECTORY + "/Data-" + index + ".xml";
     }
 
     /**
-     * Loads a predefined set of users.
+     * Suspends or resumes writing the data after mutations, e.g. to measure the handling of a request without its
+     * persistence. While writing is suspended, writeData returns without writing. A changed partition stays marked as
+     * changed and an evicted todo list is still written on its eviction, so the changes are written with the next
+     * write after writing is resumed.
+     *
+     * @param writing false to suspend writing, true to resume it
      */
-    private static UserManager loadData(ServletContext servletContext) {
-        return XmlHelper.readXmlData(servletContext);
+    public void setWriting(boolean writing) {
+        this.writing = writing;
     }
 
+    /**
+     * Writes all partitions and the todo files of their resident users in parallel.
+     *
+     * @param servletContext the context of a ServletContext
+     */
     public void writeData(ServletContext servletContext) {
-        XmlHelper.writeXmlData(this, servletContext);
+        if (readOnly) {
+            LOGGER.warning(" - - - - Data not written, as it could not be loaded - - - - ");
+            return;
+        }
+        if (!writing) {
+            return;
+        }
+        int todoIDHighWaterMark = Todo.getTodoIDHighWaterMark();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < partitions.length; i++) {
+            int index = i;
+            tasks.add(() -> {
+                partitions[index].takeChanged();
+                XmlHelper.writeXmlData(partitions[index], servletContext, partitionFile(index));
+                for (User user : partitions[index].getUsers()) {
+                    cache.write(user);
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+        writtenTodoIDHighWaterMark.accumulateAndGet(todoIDHighWaterMark, Math::max);
+    }
+
+    /**
+     * Writes the todo file of a user after his todos were changed. The partition of the user is written as well if
+     * a user was registered in it since it was last written, or if a new block of todo IDs was reserved since a
+     * partition was last written. The partition is written before the todo file, so a todo ID that was written is
+     * never above a written high-water mark and won't be allocated again after a restart.
+     *
+     * @param servletContext the context of a ServletContext
+     * @param user           the changed user
+     */
+    public void writeData(ServletContext servletContext, User user) {
+        if (readOnly) {
+            LOGGER.warning(" - - - - Data not written, as it could not be loaded - - - - ");
+            return;
+        }
+        if (!writing) {
+            return;
+        }
+        int index = partitionOf(user.getUserID());
+        int todoIDHighWaterMark = Todo.getTodoIDHighWaterMark();
+        boolean changed = partitions[index].takeChanged();
+        if (changed || todoIDHighWaterMark > writtenTodoIDHighWaterMark.get()) {
+            try {
+                XmlHelper.writeXmlData(partitions[index], servletContext, partitionFile(index));
+            } catch (RuntimeException ex) {
+                if (changed) {
+                    partitions[index].markChanged();
+                }
+                throw ex;
+            }
+            writtenTodoIDHighWaterMark.accumulateAndGet(todoIDHighWaterMark, Math::max);
+        }
+        cache.write(user);
+    }
+
+    /**
+     * Runs the tasks in parallel on the common ForkJoinPool and waits for their results.
+     * The tasks run with the context class loader of the caller, because the threads of the common pool don't have
+     * the class loader of the web application, so the XML library of the application wouldn't be found.
+     */
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(() -> {
+                Thread thread = Thread.currentThread();
+                ClassLoader previous = thread.getContextClassLoader();
+                thread.setContextClassLoader(classLoader);
+                try {
+                    return task.call();
+                } finally {
+                    thread.setContextClassLoader(previous);
+                }
+            });
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : ForkJoinPool.commonPool().invokeAll(wrapped)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+        return results;
     }
 }
@@ -0,0 +1,118 @@
+package model;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A partition of the users managed by the User Manager. Each partition has its own index by user ID and is persisted
+ * in its own file, so users of different partitions never contend for the same index or file.
+ * The file has the same format as the former single Data.xml, which is therefore read as a partition as well. The todos
+ * of the users are no longer written to the partition, but to a file per user.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@JacksonXmlRootElement(localName = "root")
+public class UserPartition {
+    private final ConcurrentHashMap<Integer, User> users = new ConcurrentHashMap<>();
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    private Integer loadedUserIDHighWaterMark;
+    private Integer loadedTodoIDHighWaterMark;
+
+    /**
+     * Returns the users of the partition.
+     *
+     * @return the users of the partition
+     */
+    @JacksonXmlElementWrapper(localName = "users")
+    @JacksonXmlProperty(localName = "user")
+    public Collection<User> getUsers() {
+        return users.values();
+    }
+
+    @SuppressWarnings("unused")
+    private void setUsers(Collection<User> users) {
+        // an empty partition is written as <users/>, which is read as null
+        if (users == null) {
+            return;
+        }
+        for (User user : users) {
+            add(user);
+        }
+    }
+
+    /**
+     * Returns the User associated with userID.
+     *
+     * @param userID id of the user to return
+     * @return a User object, or null if the partition doesn't contain the user
+     */
+    User getUser(int userID) {
+        return users.get(userID);
+    }
+
+    /**
+     * Adds a user to the partition.
+     *
+     * @param user the user to add
+     */
+    void add(User user) {
+        users.put(user.getUserID(), user);
+    }
+
+    /**
+     * Marks the partition as changed after a user was added, so it is written with the next write of one of its users.
+     */
+    void markChanged() {
+        changed.set(true);
+    }
+
+    /**
+     * Resets the change mark of the partition.
+     *
+     * @return true if the partition was changed since the last call
+     */
+    boolean takeChanged() {
+        return changed.getAndSet(false);
+    }
+
+    /**
+     * Returns the first user ID that has not been reserved yet. It is persisted with every partition.
+     *
+     * @return the high-water mark of the user IDs
+     */
+    public int getUserIDHighWaterMark() {
+        return User.getUserIDHighWaterMark();
+    }
+
+    public void setUserIDHighWaterMark(Integer highWaterMark) {
+        this.loadedUserIDHighWaterMark = highWaterMark;
+    }
+
+    /**
+     * Returns the first todo ID that has not been reserved yet. It is persisted with every partition.
+     *
+     * @return the high-water mark of the todo IDs
+     */
+    public int getTodoIDHighWaterMark() {
+        return Todo.getTodoIDHighWaterMark();
+    }
+
+    public void setTodoIDHighWaterMark(Integer highWaterMark) {
+        this.loadedTodoIDHighWaterMark = highWaterMark;
+    }
+
+    Integer getLoadedUserIDHighWaterMark() {
+        return loadedUserIDHighWaterMark;
+    }
+
+    Integer getLoadedTodoIDHighWaterMark() {
+        return loadedTodoIDHighWaterMark;
+    }
+}
@@ -0,0 +1,44 @@
+package model;
+
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The todos of a user as they are persisted in the file WEB-INF/xml/todos/userID.xml.
+ * The todos are stored apart from the user, so the todo list of an inactive user can be evicted from memory and read
+ * again when the user becomes active.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@JacksonXmlRootElement(localName = "todos")
+public class UserTodos {
+    private List<Todo> todos;
+
+    public UserTodos() {
+        this(new ArrayList<>());
+    }
+
+    UserTodos(List<Todo> todos) {
+        this.todos = todos;
+    }
+
+    /**
+     * Gets the todos of the user.
+     *
+     * @return the list of todos
+     */
+    @JacksonXmlElementWrapper(useWrapping = false)
+    @JacksonXmlProperty(localName = "todo")
+    public List<Todo> getTodos() {
+        return todos;
+    }
+
+    public void setTodos(List<Todo> todos) {
+        this.todos = (todos != null) ? todos : new ArrayList<>();
+    }
+}
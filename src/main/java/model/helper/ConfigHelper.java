@@ -0,0 +1,32 @@
+package model.helper;
+
+import javax.servlet.ServletContext;
+import java.util.logging.Logger;
+
+/**
+ * Helper methods for reading the context parameters configured in the web.xml.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class ConfigHelper {
+    private static final Logger LOGGER = Logger.getLogger(ConfigHelper.class.getName());
+
+    /**
+     * Reads a numeric context parameter.
+     *
+     * @param servletContext the context of the current servlet
+     * @param name           the name of the context parameter
+     * @param defaultValue   the value to use if the parameter is missing or invalid
+     * @return the value of the context parameter or the default value
+     */
+    public static long getLong(ServletContext servletContext, String name, long defaultValue) {
+        String value = servletContext.getInitParameter(name);
+        try {
+            return (value != null) ? Long.parseLong(value.trim()) : defaultValue;
+        } catch (NumberFormatException ex) {
+            LOGGER.warning(() -> " - - - - Invalid context parameter " + name + ": " + value + " - - - - ");
+            return defaultValue;
+        }
+    }
+}
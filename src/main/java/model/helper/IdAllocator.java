@@ -0,0 +1,69 @@
+package model.helper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Allocates unique IDs without locking.
+ * IDs are reserved in blocks: the high-water mark is the first ID that has not yet been reserved. It is persisted
+ * with the data, so that after a restart allocation can continue at the high-water mark without scanning all
+ * existing IDs. IDs of a reserved but unused block are skipped after a restart.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class IdAllocator {
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+    private final int blockSize;
+
+    /**
+     * Constructs an ID allocator with the default block size.
+     */
+    public IdAllocator() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructs an ID allocator.
+     *
+     * @param blockSize the number of IDs reserved at once
+     */
+    public IdAllocator(int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * Allocates the next ID. Reserves a new block if the ID is beyond the high-water mark.
+     *
+     * @return a unique ID
+     */
+    public int allocate() {
+        int id = next.getAndIncrement();
+        if (id >= highWaterMark.get()) {
+            int blockEnd = (id / blockSize + 1) * blockSize;
+            highWaterMark.accumulateAndGet(blockEnd, Math::max);
+        }
+        return id;
+    }
+
+    /**
+     * Resets the allocator. The next allocated ID will be the specified ID.
+     *
+     * @param nextID the next ID to allocate
+     */
+    public void reset(int nextID) {
+        next.set(nextID);
+        highWaterMark.set(nextID);
+    }
+
+    /**
+     * Returns the high-water mark, i.e. the first ID that has not been reserved yet.
+     *
+     * @return the high-water mark
+     */
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+}
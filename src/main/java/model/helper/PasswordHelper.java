@@ -0,0 +1,91 @@
+package model.helper;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Helper methods for hashing and verifying passwords with PBKDF2.
+ * A hashed password is stored as "pbkdf2:iterations:salt:hash" with the salt and hash Base64-encoded.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class PasswordHelper {
+    private static final String PREFIX = "pbkdf2";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int ITERATIONS = 65536;
+    private static final int SALT_LENGTH = 16;
+    private static final int KEY_LENGTH = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Hashes a password with a random salt.
+     *
+     * @param password the plaintext password
+     * @return the hashed password
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        return hash(password, salt);
+    }
+
+    /**
+     * Hashes a password with the specified salt. Only generated data should use a salt which is not random.
+     *
+     * @param password the plaintext password
+     * @param salt     the salt
+     * @return the hashed password
+     */
+    public static String hash(String password, byte[] salt) {
+        byte[] hash = pbkdf2(password, salt, ITERATIONS);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + ":" + ITERATIONS + ":" + encoder.encodeToString(salt) + ":" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Verifies a password against a hashed password.
+     *
+     * @param password the plaintext password
+     * @param stored   the hashed password
+     * @return true if the password matches, false otherwise
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || !isHashed(stored)) {
+            return false;
+        }
+        String[] parts = stored.split(":");
+        if (parts.length != 4) {
+            return false;
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] expected = decoder.decode(parts[3]);
+        byte[] actual = pbkdf2(password, decoder.decode(parts[2]), Integer.parseInt(parts[1]));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * Indicates whether a stored password is already hashed.
+     *
+     * @param stored the stored password
+     * @return true if the password is hashed, false if it is stored in plaintext
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX + ":");
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_LENGTH);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -1,59 +1,212 @@
 package model.helper;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import model.UserManager;
+import model.UserPartition;
+import monitoring.Histogram;
+import monitoring.MetricsRegistry;
+import monitoring.RateMeter;
+import monitoring.Span;
+import monitoring.StructuredLog;
+import monitoring.Tracer;
+import monitoring.XmlPersistenceEvent;
 
 import javax.servlet.ServletContext;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
- * Helper methods for reading and writing XML data.
+ * Helper methods for reading and writing XML data. Each file is either a partition of the users or the todos of a user.
+ * Reading and writing is measured: the time to parse and serialize the data, to write and to sync it to the disk,
+ * the time spent waiting for a concurrent write and the number of bytes.
  *
  * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
  * @version 1.0
  */
 public class XmlHelper {
-    private static final String fileName = "WEB-INF/xml/Data.xml";
     private static final Logger LOGGER = Logger.getLogger(XmlHelper.class.getName());
+    private static final ConcurrentHashMap<String, ReentrantLock> writeLocks = new ConcurrentHashMap<>();
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.getInstance();
+    private static final Histogram readTime = METRICS.timer("todoapp_xml_read_duration_seconds", "Time to read and parse the XML data.");
+    private static final Histogram readBytes = METRICS.histogram("todoapp_xml_read_bytes", "Size of the XML data read.");
+    private static final Histogram serializeTime = METRICS.timer("todoapp_xml_serialize_duration_seconds", "Time to serialize the XML data.");
+    private static final Histogram lockWaitTime = METRICS.timer("todoapp_xml_lock_wait_duration_seconds", "Time spent waiting for a concurrent write of the XML data.");
+    private static final Histogram writeTime = METRICS.timer("todoapp_xml_write_duration_seconds", "Time to write the XML data to the file.");
+    private static final Histogram fsyncTime = METRICS.timer("todoapp_xml_fsync_duration_seconds", "Time to sync the XML file to the disk.");
+    private static final Histogram writeBytes = METRICS.histogram("todoapp_xml_write_bytes", "Size of the XML data written.");
+    private static final LongAdder bytesWritten = METRICS.counter("todoapp_xml_written_bytes_total", "Total number of bytes written to the XML file.");
+    private static final LongAdder writes = METRICS.counter("todoapp_xml_writes_total", "Number of writes of the XML file.");
+    private static final RateMeter writeRate = new RateMeter();
+
+    static {
+        METRICS.gauge("todoapp_xml_writes_per_second", "Writes of the XML file per second over the last minute.", writeRate::getRate);
+    }
+
+    /**
+     * Reads a partition of the users.
+     *
+     * @param servletContext the context of the current servlet
+     * @param fileName       the file to read, relative to the web application
+     * @return the partition read from the file
+     */
+    public static UserPartition readXmlData(ServletContext servletContext, String fileName) {
+        return readXmlData(servletContext, fileName, UserPartition.class);
+    }
 
     /**
      * Reads XML data.
      *
      * @param servletContext the context of the current servlet
-     * @return a User Manager
+     * @param fileName       the file to read, relative to the web application
+     * @param type           the type of the data
+     * @param <T>            the type of the data
+     * @return the data read from the file
      */
-    public static UserManager readXmlData(ServletContext servletContext) {
+    public static <T> T readXmlData(ServletContext servletContext, String fileName, Class<T> type) {
         ObjectMapper mapper = new XmlMapper();
         mapper.registerModule(new JavaTimeModule());
-        LOGGER.info(" - - - - Read XML data from file " + fileName + " - - - - ");
-        try (InputStream in = new FileInputStream(servletContext.getRealPath(fileName))) {
-            return mapper.readValue(in, UserManager.class);
+        StructuredLog.info(LOGGER, "xml_read", "file", fileName);
+        XmlPersistenceEvent event = new XmlPersistenceEvent();
+        event.begin();
+        long start = System.nanoTime();
+        String path = servletContext.getRealPath(fileName);
+        Span span = Tracer.span("load");
+        try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+            T data = mapper.readValue(in, type);
+            readTime.record(System.nanoTime() - start);
+            long size = Files.size(Paths.get(path));
+            readBytes.record(size);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = "read";
+                event.file = fileName;
+                event.bytes = size;
+                event.commit();
+            }
+            return data;
         } catch (IOException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            span.close();
         }
     }
 
+    /**
+     * Returns the highest integer value of the elements with the given name. The file is read as a stream, so its
+     * data is never held in memory.
+     *
+     * @param servletContext the context of the current servlet
+     * @param fileName       the file to read, relative to the web application
+     * @param element        the name of the elements, e.g. todoID
+     * @return the highest value, or 0 if the file contains no such element
+     */
+    public static int readHighestValue(ServletContext servletContext, String fileName, String element) {
+        String path = servletContext.getRealPath(fileName);
+        int highest = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(path));
+             JsonParser parser = new XmlMapper().getFactory().createParser(in)) {
+            for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                if (token == JsonToken.FIELD_NAME && element.equals(parser.getCurrentName())) {
+                    parser.nextToken();
+                    highest = Math.max(highest, parser.getValueAsInt(0));
+                }
+            }
+            return highest;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Writes XML data.
+     *
+     * @param data           the data to write, e.g. a partition
+     * @param servletContext the context of the current servlet
+     * @param fileName       the file to write, relative to the web application
+     * @see #writeXmlData(Supplier, ServletContext, String)
+     */
+    public static void writeXmlData(Object data, ServletContext servletContext, String fileName) {
+        writeXmlData(() -> data, servletContext, fileName);
+    }
+
     /**
      * Writes XML data.
+     * Concurrent writes of the same file are serialized by a lock per file, so an older state can never overwrite a
+     * newer one, while different files are written in parallel. The data is obtained from the supplier after the lock
+     * has been acquired; if the supplier returns null, the file is not written.
+     * The data is written to a temporary file which then replaces the file, so a concurrent reader, e.g. of an evicted
+     * todo list, never sees a partially written file.
+     * The file is synced to the disk before the lock is released.
      *
-     * @param userManager    the User Manager
+     * @param data           the supplier of the data to write
      * @param servletContext the context of the current servlet
+     * @param fileName       the file to write, relative to the web application
+     * @return true if the file was written, false if the supplier returned null
      */
-    public static void writeXmlData(UserManager userManager, ServletContext servletContext) {
+    public static boolean writeXmlData(Supplier<?> data, ServletContext servletContext, String fileName) {
         ObjectMapper mapper = new XmlMapper();
         mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         mapper.registerModule(new JavaTimeModule());
         mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        LOGGER.info(" - - - - Write data to XML file " + fileName + " - - - - ");
-        try (OutputStream out = new FileOutputStream(servletContext.getRealPath(fileName))) {
-            mapper.writerWithDefaultPrettyPrinter().writeValue(out, userManager);
+        StructuredLog.sampled(LOGGER, "xml_write", "file", fileName);
+        XmlPersistenceEvent event = new XmlPersistenceEvent();
+        event.begin();
+        Span span = Tracer.span("persist");
+        long start = System.nanoTime();
+        ReentrantLock writeLock = writeLocks.computeIfAbsent(fileName, name -> new ReentrantLock());
+        writeLock.lock();
+        try {
+            long locked = System.nanoTime();
+            lockWaitTime.record(locked - start);
+            Object value = data.get();
+            if (value == null) {
+                return false;
+            }
+            byte[] bytes = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(value);
+            long serialized = System.nanoTime();
+            serializeTime.record(serialized - locked);
+            Path path = Paths.get(servletContext.getRealPath(fileName));
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.createDirectories(path.getParent());
+            try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+                out.write(bytes);
+                long written = System.nanoTime();
+                writeTime.record(written - serialized);
+                out.getFD().sync();
+                fsyncTime.record(System.nanoTime() - written);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            writeBytes.record(bytes.length);
+            bytesWritten.add(bytes.length);
+            writes.increment();
+            writeRate.mark();
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = "write";
+                event.file = fileName;
+                event.bytes = bytes.length;
+                event.commit();
+            }
+            return true;
         } catch (IOException ex) {
             throw new RuntimeException(ex);
+        } finally {
+            writeLock.unlock();
+            span.close();
         }
     }
 }
@@ -0,0 +1,110 @@
+package monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler which publishes the log records on a background thread.
+ * Request threads only put the record into a bounded buffer; if the buffer is full, the record is dropped and
+ * counted instead of blocking the request. The background thread passes the records to the delegate handler,
+ * e.g. a ConsoleHandler.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class AsyncLogHandler extends Handler {
+    private static final int BATCH_SIZE = 256;
+
+    private final Handler delegate;
+    private final BlockingQueue<LogRecord> buffer;
+    private final LongAdder dropped;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    /**
+     * Constructs an asynchronous handler and starts its background thread.
+     *
+     * @param delegate   the handler publishing the records
+     * @param bufferSize the maximum number of buffered records
+     */
+    public AsyncLogHandler(Handler delegate, int bufferSize) {
+        this.delegate = delegate;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        this.dropped = MetricsRegistry.getInstance()
+            .counter("todoapp_log_records_dropped_total", "Number of log records dropped because the log buffer was full.");
+        MetricsRegistry.getInstance()
+            .gauge("todoapp_log_buffer_size", "Number of log records waiting to be written.", buffer::size);
+        this.worker = new Thread(this::drain, "async-log");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Buffers a log record. Never blocks.
+     *
+     * @param record the log record
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        if (!buffer.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    /**
+     * Writes the buffered records and stops the background thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        publishAll(new ArrayList<>(buffer));
+        buffer.clear();
+        delegate.close();
+    }
+
+    private void drain() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        while (!closed) {
+            try {
+                batch.add(buffer.take());
+                buffer.drainTo(batch, BATCH_SIZE - 1);
+                publishAll(batch);
+                batch.clear();
+            } catch (InterruptedException ex) {
+                break;
+            }
+        }
+    }
+
+    private void publishAll(List<LogRecord> records) {
+        for (LogRecord record : records) {
+            try {
+                delegate.publish(record);
+            } catch (RuntimeException ex) {
+                reportError(null, ex, ErrorManager.WRITE_FAILURE);
+            }
+        }
+        delegate.flush();
+    }
+}
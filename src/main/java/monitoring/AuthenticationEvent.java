@@ -0,0 +1,30 @@
+package monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted for every authentication of a REST request.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@Name("todoapp.Authentication")
+@Label("Authentication")
+@Category({"Todo Application", "REST"})
+@Description("Authentication of a REST request")
+public class AuthenticationEvent extends Event {
+    @Label("Scheme")
+    @Description("Authentication scheme: Basic, Basic (cached) or Bearer")
+    public String scheme;
+
+    @Label("Outcome")
+    @Description("Outcome of the authentication: authenticated, unauthorized or rate limited")
+    public String outcome;
+
+    @Label("User ID")
+    public int userID = -1;
+}
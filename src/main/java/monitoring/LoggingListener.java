@@ -0,0 +1,60 @@
+package monitoring;
+
+import model.helper.ConfigHelper;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+/**
+ * Routes the log records of the application through an {@link AsyncLogHandler}, so request threads never wait for
+ * the console. The buffer size is configured with the context parameter "logBufferSize", the sample rate of
+ * high-volume events with "logSampleRate".
+ * The listener is declared in the web.xml so that it runs before the other listeners.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class LoggingListener implements ServletContextListener {
+    // The loggers are referenced here, since the LogManager only keeps weak references
+    private static final Logger[] LOGGERS = {
+        Logger.getLogger("controller"), Logger.getLogger("model"), Logger.getLogger("monitoring")
+    };
+
+    private Handler handler;
+
+    /**
+     * Installs the asynchronous handler.
+     *
+     * @param sce the servlet context event
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        ServletContext servletContext = sce.getServletContext();
+        StructuredLog.setSampleRate((int) ConfigHelper.getLong(servletContext, "logSampleRate", 100));
+        Handler console = new ConsoleHandler();
+        console.setFormatter(new StructuredFormatter());
+        handler = new AsyncLogHandler(console, (int) ConfigHelper.getLong(servletContext, "logBufferSize", 8192));
+        for (Logger logger : LOGGERS) {
+            logger.addHandler(handler);
+            logger.setUseParentHandlers(false);
+        }
+    }
+
+    /**
+     * Removes the asynchronous handler and writes the buffered records.
+     *
+     * @param sce the servlet context event
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        for (Logger logger : LOGGERS) {
+            logger.removeHandler(handler);
+            logger.setUseParentHandlers(true);
+        }
+        handler.close();
+    }
+}
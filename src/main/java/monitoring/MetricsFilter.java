@@ -0,0 +1,91 @@
+package monitoring;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency, the number of requests and errors and the number of requests in flight per route.
+ * A route consists of the HTTP method and the servlet path, path parameters are replaced by "{id}".
+ * The filter is declared in the web.xml so that it runs before the AuthenticationFilter and its latency includes
+ * the authentication.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class MetricsFilter extends HttpFilter {
+    private static final int MAX_ROUTES = 100;
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Measures a request.
+     *
+     * @param request  the request
+     * @param response the response
+     * @param chain    the filter chain
+     * @throws IOException      is thrown when the chain couldn't be filtered
+     * @throws ServletException is thrown when the chain couldn't be filtered
+     */
+    @Override
+    public void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+        RouteMetrics metrics = getRouteMetrics(request);
+        metrics.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            chain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            metrics.latency.record(System.nanoTime() - start);
+            metrics.inFlight.decrementAndGet();
+            metrics.requests.increment();
+            if (status >= 400) {
+                metrics.errors(status).increment();
+            }
+        }
+    }
+
+    private RouteMetrics getRouteMetrics(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        String path = (pathInfo == null || pathInfo.isEmpty() || "/".equals(pathInfo))
+            ? request.getServletPath()
+            : request.getServletPath() + "/{id}";
+        String route = request.getMethod() + " " + path;
+        RouteMetrics metrics = routes.get(route);
+        if (metrics == null) {
+            // unknown paths must not create an unbounded number of routes
+            metrics = routes.computeIfAbsent(routes.size() < MAX_ROUTES ? route : "other", RouteMetrics::new);
+        }
+        return metrics;
+    }
+
+    private static class RouteMetrics {
+        private final String route;
+        private final Histogram latency;
+        private final LongAdder requests;
+        private final AtomicLong inFlight;
+        private final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+
+        private RouteMetrics(String route) {
+            MetricsRegistry registry = MetricsRegistry.getInstance();
+            this.route = route;
+            this.latency = registry.timer("todoapp_request_duration_seconds", "Request latency per route.", "route", route);
+            this.requests = registry.counter("todoapp_requests_total", "Number of requests per route.", "route", route);
+            this.inFlight = registry.gauge("todoapp_requests_in_flight", "Number of requests currently processed per route.", "route", route);
+        }
+
+        private LongAdder errors(int status) {
+            return errors.computeIfAbsent(status, key -> MetricsRegistry.getInstance()
+                .counter("todoapp_request_errors_total", "Number of requests answered with an error status per route.",
+                    "route", route, "status", String.valueOf(status)));
+        }
+    }
+}
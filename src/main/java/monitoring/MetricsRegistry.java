@@ -0,0 +1,183 @@
+package monitoring;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of the application metrics.
+ * Metrics are grouped in families of the same name, each member of a family is identified by its labels.
+ * Counters are {@link LongAdder}s, gauges are {@link AtomicLong}s or functions and distributions are
+ * {@link Histogram}s; all of them can be recorded without locking. The registry writes all metrics in the
+ * Prometheus text exposition format.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry of the application.
+     *
+     * @return the registry
+     */
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a counter, creating it on first use.
+     *
+     * @param name   the name of the metric
+     * @param help   the description of the metric
+     * @param labels the labels as alternating names and values
+     * @return the counter
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, "counter", 1).members.computeIfAbsent(labels(labels), key -> new LongAdder());
+    }
+
+    /**
+     * Returns a gauge which is set or incremented by the application, creating it on first use.
+     *
+     * @param name   the name of the metric
+     * @param help   the description of the metric
+     * @param labels the labels as alternating names and values
+     * @return the gauge
+     */
+    public AtomicLong gauge(String name, String help, String... labels) {
+        return (AtomicLong) family(name, help, "gauge", 1).members.computeIfAbsent(labels(labels), key -> new AtomicLong());
+    }
+
+    /**
+     * Registers a gauge whose value is computed when the metrics are written.
+     *
+     * @param name     the name of the metric
+     * @param help     the description of the metric
+     * @param supplier the function computing the value
+     * @param labels   the labels as alternating names and values
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+        family(name, help, "gauge", 1).members.put(labels(labels), supplier);
+    }
+
+    /**
+     * Returns a histogram of durations in nanoseconds, creating it on first use. It is written in seconds.
+     *
+     * @param name   the name of the metric
+     * @param help   the description of the metric
+     * @param labels the labels as alternating names and values
+     * @return the histogram
+     */
+    public Histogram timer(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "summary", 1e-9).members.computeIfAbsent(labels(labels), key -> new Histogram());
+    }
+
+    /**
+     * Returns a histogram of values written as they are recorded, e.g. sizes in bytes, creating it on first use.
+     *
+     * @param name   the name of the metric
+     * @param help   the description of the metric
+     * @param labels the labels as alternating names and values
+     * @return the histogram
+     */
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "summary", 1).members.computeIfAbsent(labels(labels), key -> new Histogram());
+    }
+
+    /**
+     * Returns the number of members of a metric family.
+     *
+     * @param name the name of the metric
+     * @return the number of members with different labels
+     */
+    public int size(String name) {
+        Family family = families.get(name);
+        return (family != null) ? family.members.size() : 0;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     *
+     * @param out the builder to write to
+     */
+    public void writeTo(StringBuilder out) {
+        families.values().stream().sorted((a, b) -> a.name.compareTo(b.name)).forEach(family -> {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            family.members.forEach((labels, metric) -> writeMetric(out, family, labels, metric));
+        });
+    }
+
+    private void writeMetric(StringBuilder out, Family family, String labels, Object metric) {
+        if (metric instanceof LongAdder) {
+            writeSample(out, family.name, labels, ((LongAdder) metric).sum());
+        } else if (metric instanceof AtomicLong) {
+            writeSample(out, family.name, labels, ((AtomicLong) metric).get());
+        } else if (metric instanceof DoubleSupplier) {
+            writeSample(out, family.name, labels, ((DoubleSupplier) metric).getAsDouble());
+        } else if (metric instanceof Histogram) {
+            Histogram histogram = (Histogram) metric;
+            for (double quantile : QUANTILES) {
+                String quantileLabel = "quantile=\"" + quantile + "\"";
+                String quantileLabels = labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel;
+                writeSample(out, family.name, quantileLabels, histogram.getPercentile(quantile) * family.scale);
+            }
+            writeSample(out, family.name + "_max", labels, histogram.getMax() * family.scale);
+            writeSample(out, family.name + "_sum", labels, histogram.getSum() * family.scale);
+            writeSample(out, family.name + "_count", labels, histogram.getCount());
+        }
+    }
+
+    private void writeSample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private Family family(String name, String help, String type, double scale) {
+        return families.computeIfAbsent(name, key -> new Family(name, help, type, scale));
+    }
+
+    private static String labels(String... labels) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(labels[i]).append("=\"")
+                .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                .append('"');
+        }
+        return builder.toString();
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final double scale;
+        private final Map<String, Object> members = new ConcurrentHashMap<>();
+
+        private Family(String name, String help, String type, double scale) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.scale = scale;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures the rate of events per second over the last minute.
+ * Events are counted in one slot per second; a slot is reused after a minute. Marking an event only updates
+ * atomic counters.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class RateMeter {
+    private static final int WINDOW_SECONDS = 60;
+
+    private final AtomicLongArray counts = new AtomicLongArray(WINDOW_SECONDS);
+    private final AtomicLongArray seconds = new AtomicLongArray(WINDOW_SECONDS);
+
+    /**
+     * Marks the occurrence of an event.
+     */
+    public void mark() {
+        long second = System.currentTimeMillis() / 1000;
+        int slot = (int) (second % WINDOW_SECONDS);
+        long slotSecond = seconds.get(slot);
+        if (slotSecond != second && seconds.compareAndSet(slot, slotSecond, second)) {
+            counts.set(slot, 0);
+        }
+        counts.incrementAndGet(slot);
+    }
+
+    /**
+     * Returns the average number of events per second over the last minute.
+     *
+     * @return the rate per second
+     */
+    public double getRate() {
+        long now = System.currentTimeMillis() / 1000;
+        long total = 0;
+        for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+            if (now - seconds.get(slot) < WINDOW_SECONDS) {
+                total += counts.get(slot);
+            }
+        }
+        return (double) total / WINDOW_SECONDS;
+    }
+}
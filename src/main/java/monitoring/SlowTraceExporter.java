@@ -0,0 +1,64 @@
+package monitoring;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Writes traces of slow requests to a rolling file.
+ * Only traces taking longer than the threshold are written. The file rolls over when it reaches its size limit and
+ * a fixed number of files is kept.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class SlowTraceExporter {
+    private static final Logger LOGGER = Logger.getLogger(SlowTraceExporter.class.getName());
+
+    private final long thresholdNanos;
+    private final FileHandler handler;
+
+    /**
+     * Constructs an exporter.
+     *
+     * @param pattern         the file name pattern as used by {@link FileHandler}, e.g. "%t/todoapp-traces.%g.log"
+     * @param limitBytes      the maximum size of a file
+     * @param count           the number of files to keep
+     * @param thresholdMillis the minimum duration of an exported trace
+     * @throws IOException if the file couldn't be opened
+     */
+    public SlowTraceExporter(String pattern, int limitBytes, int count, long thresholdMillis) throws IOException {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.handler = new FileHandler(pattern, limitBytes, Math.max(1, count), true);
+        this.handler.setEncoding("UTF-8");
+        this.handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                return record.getMessage() + System.lineSeparator();
+            }
+        });
+    }
+
+    /**
+     * Writes a trace if it took longer than the threshold.
+     *
+     * @param trace the ended trace
+     */
+    public void export(Trace trace) {
+        if (trace != null && trace.getDuration() >= thresholdNanos) {
+            handler.publish(new LogRecord(Level.INFO, trace.format()));
+            LOGGER.fine(() -> " - - - - Slow request traced: " + trace.getRequestID() + " - - - - ");
+        }
+    }
+
+    /**
+     * Closes the file.
+     */
+    public void close() {
+        handler.close();
+    }
+}
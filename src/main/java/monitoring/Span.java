@@ -0,0 +1,57 @@
+package monitoring;
+
+/**
+ * A timed section of a request, e.g. the authentication or the serialization of the response.
+ * Spans are opened with {@link Tracer#span(String)} and closed in a finally block,
+ * {@code Span span = Tracer.span("name"); try { ... } finally { span.close(); }}, so the span is not an unused
+ * resource variable of a try-with-resources statement.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class Span implements AutoCloseable {
+    private final Trace trace;
+    private final String name;
+    private final int depth;
+    private final long start;
+    private long end;
+
+    Span(Trace trace, String name, int depth) {
+        this.trace = trace;
+        this.name = name;
+        this.depth = depth;
+        this.start = System.nanoTime();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the duration of the span.
+     *
+     * @return the duration in nanoseconds, or 0 if the span has not been closed
+     */
+    public long getDuration() {
+        return (end > 0) ? end - start : 0;
+    }
+
+    /**
+     * Closes the span.
+     */
+    @Override
+    public void close() {
+        if (trace != null) {
+            end = System.nanoTime();
+            trace.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package monitoring;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats log records as one line of key/value pairs, e.g.
+ * {@code 2020-06-01T12:00:00Z INFO logger=model.User event=todo_created todoID=3 requestID=k2x-1}.
+ * Records which are not structured are written with their formatted message as "msg".
+ * Since the records are formatted on a background thread, the logger name is written instead of the calling method.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class StructuredFormatter extends Formatter {
+
+    @Override
+    public String format(LogRecord record) {
+        StringBuilder line = new StringBuilder(128);
+        line.append(Instant.ofEpochMilli(record.getMillis())).append(' ')
+            .append(record.getLevel().getName())
+            .append(" logger=").append(record.getLoggerName());
+        if (record instanceof StructuredRecord) {
+            StructuredRecord structured = (StructuredRecord) record;
+            line.append(" event=").append(structured.getEvent());
+            Object[] keyValues = structured.getKeyValues();
+            for (int i = 0; i + 1 < keyValues.length; i += 2) {
+                line.append(' ').append(keyValues[i]).append('=');
+                appendValue(line, String.valueOf(keyValues[i + 1]));
+            }
+        } else {
+            line.append(" msg=");
+            appendValue(line, formatMessage(record).replace(" - - - -", "").trim());
+        }
+        if (record.getThrown() != null) {
+            StringWriter stackTrace = new StringWriter();
+            record.getThrown().printStackTrace(new PrintWriter(stackTrace));
+            line.append(System.lineSeparator()).append(stackTrace);
+        }
+        return line.append(System.lineSeparator()).toString();
+    }
+
+    private static void appendValue(StringBuilder line, String value) {
+        if (value.isEmpty() || value.indexOf(' ') >= 0 || value.indexOf('"') >= 0) {
+            line.append('"').append(value.replace("\"", "\\\"")).append('"');
+        } else {
+            line.append(value);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package monitoring;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes structured log records: an event name followed by key/value pairs and the ID of the current request.
+ * Nothing is allocated if the level is disabled for the logger. High-volume events are logged with
+ * {@link #sampled}, which only writes every n-th occurrence of each event.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class StructuredLog {
+    private static final ConcurrentHashMap<String, AtomicLong> occurrences = new ConcurrentHashMap<>();
+    private static volatile int sampleRate = 1;
+
+    /**
+     * Sets how many occurrences of a sampled event are counted per written record.
+     *
+     * @param rate the sample rate, 1 writes every occurrence
+     */
+    public static void setSampleRate(int rate) {
+        sampleRate = Math.max(1, rate);
+    }
+
+    /**
+     * Logs an event at level INFO.
+     *
+     * @param logger the logger
+     * @param event  the name of the event
+     * @param key    the key
+     * @param value  the value
+     */
+    public static void info(Logger logger, String event, String key, Object value) {
+        if (logger.isLoggable(Level.INFO)) {
+            log(logger, Level.INFO, event, key, value);
+        }
+    }
+
+    /**
+     * Logs an occurrence of a high-volume event at level INFO, if it is sampled.
+     *
+     * @param logger the logger
+     * @param event  the name of the event
+     */
+    public static void sampled(Logger logger, String event) {
+        if (logger.isLoggable(Level.INFO) && isSampled(event)) {
+            log(logger, Level.INFO, event, "sampleRate", sampleRate);
+        }
+    }
+
+    /**
+     * Logs an occurrence of a high-volume event at level INFO, if it is sampled.
+     *
+     * @param logger the logger
+     * @param event  the name of the event
+     * @param key    the key
+     * @param value  the value
+     */
+    public static void sampled(Logger logger, String event, String key, Object value) {
+        if (logger.isLoggable(Level.INFO) && isSampled(event)) {
+            log(logger, Level.INFO, event, key, value, "sampleRate", sampleRate);
+        }
+    }
+
+    private static boolean isSampled(String event) {
+        int rate = sampleRate;
+        return rate == 1 || occurrences.computeIfAbsent(event, e -> new AtomicLong()).getAndIncrement() % rate == 0;
+    }
+
+    private static void log(Logger logger, Level level, String event, Object... keyValues) {
+        String requestID = Tracer.currentRequestID();
+        Object[] pairs = keyValues;
+        if (requestID != null) {
+            pairs = new Object[keyValues.length + 2];
+            System.arraycopy(keyValues, 0, pairs, 0, keyValues.length);
+            pairs[keyValues.length] = "requestID";
+            pairs[keyValues.length + 1] = requestID;
+        }
+        StructuredRecord record = new StructuredRecord(level, event, pairs);
+        record.setLoggerName(logger.getName());
+        logger.log(record);
+    }
+}
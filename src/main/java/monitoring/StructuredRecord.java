@@ -0,0 +1,32 @@
+package monitoring;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log record consisting of an event name and key/value pairs instead of a formatted message.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class StructuredRecord extends LogRecord {
+    private final Object[] keyValues;
+
+    StructuredRecord(Level level, String event, Object[] keyValues) {
+        super(level, event);
+        this.keyValues = keyValues;
+    }
+
+    public String getEvent() {
+        return getMessage();
+    }
+
+    /**
+     * Returns the key/value pairs, keys at even and values at odd indexes.
+     *
+     * @return the key/value pairs
+     */
+    public Object[] getKeyValues() {
+        return keyValues;
+    }
+}
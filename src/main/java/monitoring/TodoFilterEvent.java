@@ -0,0 +1,34 @@
+package monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted when the todo list of a user is read, filtered or not.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@Name("todoapp.TodoFilter")
+@Label("Todo Filter")
+@Category({"Todo Application", "Model"})
+@Description("Filtering of the todo list of a user")
+public class TodoFilterEvent extends Event {
+    @Label("User ID")
+    public int userID;
+
+    @Label("Filter")
+    @Description("Filter type: none, category, status or category and status")
+    public String filter;
+
+    @Label("Input Size")
+    @Description("Number of todos filtered")
+    public int inputSize;
+
+    @Label("Result Size")
+    @Description("Number of todos matching the filter")
+    public int resultSize;
+}
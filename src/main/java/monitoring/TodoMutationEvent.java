@@ -0,0 +1,33 @@
+package monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted when a todo is added to, updated in or deleted from the list of a user.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@Name("todoapp.TodoMutation")
+@Label("Todo Mutation")
+@Category({"Todo Application", "Model"})
+@Description("Addition, update or deletion of a todo")
+public class TodoMutationEvent extends Event {
+    @Label("Operation")
+    @Description("Operation: add, update or delete")
+    public String operation;
+
+    @Label("User ID")
+    public int userID;
+
+    @Label("Todo ID")
+    public int todoID;
+
+    @Label("List Size")
+    @Description("Number of todos of the user after the mutation")
+    public int listSize;
+}
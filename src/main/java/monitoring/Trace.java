@@ -0,0 +1,84 @@
+package monitoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The spans recorded while processing one request.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class Trace {
+    private static final int MAX_SPANS = 1000;
+
+    private final String requestID;
+    private final String description;
+    private final long start = System.nanoTime();
+    private final List<Span> spans = new ArrayList<>();
+    private long end;
+    private int depth;
+
+    Trace(String requestID, String description) {
+        this.requestID = requestID;
+        this.description = description;
+    }
+
+    public String getRequestID() {
+        return requestID;
+    }
+
+    /**
+     * Returns the duration of the request.
+     *
+     * @return the duration in nanoseconds, or 0 if the trace has not ended
+     */
+    public long getDuration() {
+        return (end > 0) ? end - start : 0;
+    }
+
+    Span open(String name) {
+        Span span = new Span(this, name, ++depth);
+        if (spans.size() < MAX_SPANS) {
+            spans.add(span);
+        }
+        return span;
+    }
+
+    void close() {
+        depth--;
+    }
+
+    void end() {
+        end = System.nanoTime();
+    }
+
+    /**
+     * Formats the trace with one line per span, indented by the nesting depth. Each line shows the offset from the
+     * start of the request and the duration of the span in milliseconds.
+     *
+     * @return the formatted trace
+     */
+    public String format() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("requestID=").append(requestID)
+            .append(' ').append(description)
+            .append(" duration=").append(millis(getDuration())).append("ms");
+        for (Span span : spans) {
+            builder.append('\n');
+            for (int i = 0; i < span.getDepth(); i++) {
+                builder.append("  ");
+            }
+            builder.append('+').append(millis(span.getStart() - start)).append("ms ")
+                .append(span.getName()).append(' ').append(millis(span.getDuration())).append("ms");
+        }
+        if (spans.size() >= MAX_SPANS) {
+            builder.append("\n  ... further spans omitted");
+        }
+        return builder.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
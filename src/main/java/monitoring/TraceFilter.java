@@ -0,0 +1,93 @@
+package monitoring;
+
+import model.helper.ConfigHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Assigns an ID to every request, returns it in the "X-Request-ID" header and traces the request.
+ * A valid "X-Request-ID" sent by the client is kept. Traces of slow requests are written by the
+ * {@link SlowTraceExporter}.
+ * The filter is declared in the web.xml so that it runs before the AuthenticationFilter and traces the authentication.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class TraceFilter extends HttpFilter {
+    public static final String REQUEST_ID_HEADER = "X-Request-ID";
+    public static final String REQUEST_ID_ATTRIBUTE = "requestID";
+
+    private static final Logger LOGGER = Logger.getLogger(TraceFilter.class.getName());
+    private static final Pattern VALID_REQUEST_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final String prefix = Long.toString(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private SlowTraceExporter exporter;
+
+    /**
+     * Opens the file for slow traces. It is configured with the context parameters "slowTraceFile" (a file name
+     * pattern as used by java.util.logging.FileHandler), "slowTraceFileLimit" (bytes per file),
+     * "slowTraceFileCount" and "slowTraceMillis" (the threshold for a trace to be written).
+     */
+    @Override
+    public void init() {
+        ServletContext servletContext = getServletContext();
+        String pattern = servletContext.getInitParameter("slowTraceFile");
+        try {
+            exporter = new SlowTraceExporter((pattern != null) ? pattern : "%t/todoapp-slow-traces.%g.log",
+                (int) ConfigHelper.getLong(servletContext, "slowTraceFileLimit", 10 * 1024 * 1024),
+                (int) ConfigHelper.getLong(servletContext, "slowTraceFileCount", 5),
+                ConfigHelper.getLong(servletContext, "slowTraceMillis", 500));
+        } catch (IOException ex) {
+            LOGGER.warning(() -> " - - - - Slow traces will not be written: " + ex.getMessage() + " - - - - ");
+        }
+    }
+
+    /**
+     * Traces a request.
+     *
+     * @param request  the request
+     * @param response the response
+     * @param chain    the filter chain
+     * @throws IOException      is thrown when the chain couldn't be filtered
+     * @throws ServletException is thrown when the chain couldn't be filtered
+     */
+    @Override
+    public void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+        String requestID = request.getHeader(REQUEST_ID_HEADER);
+        if (requestID == null || !VALID_REQUEST_ID.matcher(requestID).matches()) {
+            requestID = prefix + "-" + Long.toString(sequence.incrementAndGet(), 36);
+        }
+        request.setAttribute(REQUEST_ID_ATTRIBUTE, requestID);
+        response.setHeader(REQUEST_ID_HEADER, requestID);
+        Tracer.start(requestID, "method=" + request.getMethod() + " path=" + request.getRequestURI());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Trace trace = Tracer.end();
+            if (exporter != null) {
+                exporter.export(trace);
+            }
+        }
+    }
+
+    /**
+     * Closes the file for slow traces.
+     */
+    @Override
+    public void destroy() {
+        if (exporter != null) {
+            exporter.close();
+        }
+    }
+}
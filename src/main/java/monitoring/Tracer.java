@@ -0,0 +1,62 @@
+package monitoring;
+
+/**
+ * Lightweight tracing of requests.
+ * A trace is bound to the thread processing a request. Spans opened while no trace is active, e.g. during the
+ * warm-up, are not recorded and cost no allocation.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+public class Tracer {
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+    private static final Span NOOP = new Span(null, null, 0);
+
+    /**
+     * Starts a trace for the current thread.
+     *
+     * @param requestID   the ID of the request
+     * @param description a description of the request, e.g. method and path
+     * @return the started trace
+     */
+    public static Trace start(String requestID, String description) {
+        Trace trace = new Trace(requestID, description);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * Opens a span in the trace of the current thread.
+     *
+     * @param name the name of the span
+     * @return the span, which must be closed
+     */
+    public static Span span(String name) {
+        Trace trace = CURRENT.get();
+        return (trace != null) ? trace.open(name) : NOOP;
+    }
+
+    /**
+     * Returns the ID of the request traced by the current thread.
+     *
+     * @return the request ID, or null if no trace is active
+     */
+    public static String currentRequestID() {
+        Trace trace = CURRENT.get();
+        return (trace != null) ? trace.getRequestID() : null;
+    }
+
+    /**
+     * Ends the trace of the current thread.
+     *
+     * @return the ended trace, or null if no trace was active
+     */
+    public static Trace end() {
+        Trace trace = CURRENT.get();
+        CURRENT.remove();
+        if (trace != null) {
+            trace.end();
+        }
+        return trace;
+    }
+}
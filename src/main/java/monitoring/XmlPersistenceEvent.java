@@ -0,0 +1,31 @@
+package monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted when the XML data is read or written.
+ *
+ * @author Igor Stojanovic, Sabina Löffel, Christophe Leupi, Raphael Gerber
+ * @version 1.0
+ */
+@Name("todoapp.XmlPersistence")
+@Label("XML Persistence")
+@Category({"Todo Application", "Persistence"})
+@Description("Reading or writing of the XML data")
+public class XmlPersistenceEvent extends Event {
+    @Label("Operation")
+    @Description("Operation: read or write")
+    public String operation;
+
+    @Label("File")
+    public String file;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -93,6 +93,20 @@
                             </div>
                         </div>
 
+                        <div class="control has-icons-left">
+                            <div class="select">
+                                <select name="sort">
+                                    <option value="due" <c:if test="${sortOrder.equals('due')}">selected</c:if>>Sort: due date</option>
+                                    <option value="title" <c:if test="${sortOrder.equals('title')}">selected</c:if>>Sort: title</option>
+                                    <option value="important" <c:if test="${sortOrder.equals('important')}">selected</c:if>>Sort: important</option>
+                                    <option value="created" <c:if test="${sortOrder.equals('created')}">selected</c:if>>Sort: created</option>
+                                </select>
+                            </div>
+                            <div class="icon is-small is-left">
+                                <i class="fas fa-sort"></i>
+                            </div>
+                        </div>
+
                         <c:if test="${listIsFiltered}">
                             <div class="control">
                                 <a href="todos" title="Delete Filter" class="button is-light"><span class="icon"><i class="fas fa-trash"></i></span></a>